@@ -0,0 +1,144 @@
+package com.example.s3_bucket.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors for work that runs outside the servlet request threads. With {@code spring.threads.virtual.enabled}
+ * the stage work gets a virtual thread per task, and video jobs keep their bounded queue but run on virtual
+ * worker threads.
+ */
+@Configuration
+public class AsyncConfig {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${video.jobs.pool-size:4}")
+    private int videoJobPoolSize;
+
+    @Value("${video.jobs.queue-capacity:100}")
+    private int videoJobQueueCapacity;
+
+    @Value("${video.hls.pool-size:4}")
+    private int videoPackagingPoolSize;
+
+    @Value("${video.hls.queue-capacity:100}")
+    private int videoPackagingQueueCapacity;
+
+    @Value("${upload.batch.pool-size:16}")
+    private int uploadBatchPoolSize;
+
+    @Value("${upload.batch.queue-capacity:200}")
+    private int uploadBatchQueueCapacity;
+
+    @Value("${upload.stage.pool-size:16}")
+    private int uploadStagePoolSize;
+
+    @Value("${upload.stage.queue-capacity:500}")
+    private int uploadStageQueueCapacity;
+
+    @Value("${image.variants.pool-size:0}")
+    private int imageVariantPoolSize;
+
+    @Value("${image.variants.queue-capacity:500}")
+    private int imageVariantQueueCapacity;
+
+    @Value("${image.variants.background.pool-size:1}")
+    private int imageVariantBackgroundPoolSize;
+
+    @Value("${image.variants.background.queue-capacity:1000}")
+    private int imageVariantBackgroundQueueCapacity;
+
+    @Bean(name = "uploadStageExecutor")
+    public AsyncTaskExecutor uploadStageExecutor() {
+        if (virtualThreads) {
+            // Stage tasks only wait on I/O, so there is no pool to size
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("upload-stage-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(uploadStagePoolSize);
+        executor.setMaxPoolSize(uploadStagePoolSize);
+        executor.setQueueCapacity(uploadStageQueueCapacity);
+        executor.setThreadNamePrefix("upload-stage-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "uploadBatchExecutor")
+    public AsyncTaskExecutor uploadBatchExecutor() {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("upload-batch-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        // Kept apart from the stage pool because batch items wait on stage tasks
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(uploadBatchPoolSize);
+        executor.setMaxPoolSize(uploadBatchPoolSize);
+        executor.setQueueCapacity(uploadBatchQueueCapacity);
+        executor.setThreadNamePrefix("upload-batch-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "imageVariantExecutor")
+    public ThreadPoolTaskExecutor imageVariantExecutor() {
+        // Decoding and encoding are CPU bound, so this stays a platform pool sized to the cores in both modes
+        int poolSize = imageVariantPoolSize > 0 ? imageVariantPoolSize : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(imageVariantQueueCapacity);
+        executor.setThreadNamePrefix("image-variant-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "imageVariantBackgroundExecutor")
+    public ThreadPoolTaskExecutor imageVariantBackgroundExecutor() {
+        // Deferred variants are best effort, a small low-priority pool keeps them behind upload work
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(imageVariantBackgroundPoolSize);
+        executor.setMaxPoolSize(imageVariantBackgroundPoolSize);
+        executor.setQueueCapacity(imageVariantBackgroundQueueCapacity);
+        executor.setThreadPriority(Thread.MIN_PRIORITY);
+        executor.setThreadNamePrefix("image-variant-bg-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "videoJobExecutor")
+    public ThreadPoolTaskExecutor videoJobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(videoJobPoolSize);
+        executor.setMaxPoolSize(videoJobPoolSize);
+        executor.setQueueCapacity(videoJobQueueCapacity);
+        executor.setThreadNamePrefix("video-job-");
+        // The pool size still caps concurrent ffmpeg processes, virtual workers only free the carrier while they wait
+        executor.setVirtualThreads(virtualThreads);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "videoPackagingExecutor")
+    public ThreadPoolTaskExecutor videoPackagingExecutor() {
+        // HLS packages are built next to the MP4 of the same upload; the encodes still queue for transcode slots
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(videoPackagingPoolSize);
+        executor.setMaxPoolSize(videoPackagingPoolSize);
+        executor.setQueueCapacity(videoPackagingQueueCapacity);
+        executor.setThreadNamePrefix("video-hls-");
+        executor.setVirtualThreads(virtualThreads);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.s3_bucket.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.sqs.SqsClient;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Shared AWS SDK clients. The clients are thread-safe and hold their own connection pools,
+ * so a single instance of each is shared by every service that talks to AWS.
+ */
+@Slf4j
+@Configuration
+public class AwsClientConfig {
+
+    @Value("${api.class.s3.image.access-key}")
+    private String accessKey;
+
+    @Value("${api.class.s3.image.secret-key}")
+    private String secretKey;
+
+    @Value("${aws.bucket.region}")
+    private String region;
+
+    @Value("${aws.sqs.endpoint:}")
+    private String sqsEndpoint;
+
+    @Value("${aws.s3.endpoint:}")
+    private String s3Endpoint;
+
+    @Value("${aws.s3.path-style:false}")
+    private boolean s3PathStyle;
+
+    @Value("${s3.transfer.max-connections:64}")
+    private int maxConnections;
+
+    private AwsCredentialsProvider credentialsProvider() {
+        return StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+    }
+
+    private Region awsRegion() {
+        return Region.of(region);
+    }
+
+    /**
+     * Optional S3 endpoint override, used to point the S3 clients and the presigner at a local
+     * S3-compatible stand-in such as MinIO or LocalStack.
+     */
+    private URI s3EndpointOverride() {
+        return StringUtils.hasText(s3Endpoint) ? URI.create(s3Endpoint) : null;
+    }
+
+    @Bean(destroyMethod = "close")
+    public S3Client s3Client() {
+        log.info("LOG:: Initializing AWS S3 client with region: {}", region);
+        return S3Client.builder()
+                .region(awsRegion())
+                .credentialsProvider(credentialsProvider())
+                .endpointOverride(s3EndpointOverride())
+                .forcePathStyle(s3PathStyle)
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public S3AsyncClient s3AsyncClient() {
+        log.info("LOG:: Initializing AWS S3 async client with region: {} and {} max connections", region, maxConnections);
+        return S3AsyncClient.builder()
+                .region(awsRegion())
+                .credentialsProvider(credentialsProvider())
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxConnections)
+                        .connectionAcquisitionTimeout(Duration.ofSeconds(60)))
+                .endpointOverride(s3EndpointOverride())
+                .forcePathStyle(s3PathStyle)
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public S3Presigner s3Presigner() {
+        if (s3EndpointOverride() != null) {
+            log.info("LOG:: Using S3 endpoint override: {} (path-style: {})", s3Endpoint, s3PathStyle);
+        }
+        return S3Presigner.builder()
+                .region(awsRegion())
+                .credentialsProvider(credentialsProvider())
+                .endpointOverride(s3EndpointOverride())
+                .serviceConfiguration(S3Configuration.builder()
+                        .pathStyleAccessEnabled(s3PathStyle)
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public RekognitionClient rekognitionClient() {
+        log.info("LOG:: Initializing AWS Rekognition client with region: {}", region);
+        return RekognitionClient.builder()
+                .region(awsRegion())
+                .credentialsProvider(credentialsProvider())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public SqsClient sqsClient() {
+        var builder = SqsClient.builder()
+                .region(awsRegion())
+                .credentialsProvider(credentialsProvider());
+        // Allows pointing at a local SQS stand-in such as ElasticMQ or LocalStack
+        if (StringUtils.hasText(sqsEndpoint)) {
+            log.info("LOG:: Using SQS endpoint override: {}", sqsEndpoint);
+            builder.endpointOverride(URI.create(sqsEndpoint));
+        }
+        return builder.build();
+    }
+}
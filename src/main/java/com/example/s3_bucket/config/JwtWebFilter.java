@@ -0,0 +1,61 @@
+package com.example.s3_bucket.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.security.Principal;
+
+/**
+ * Reactive counterpart of {@link JwtFilter} for the WebFlux upload server. The token is decrypted and
+ * validated by the same code, and the resulting authentication becomes the exchange principal. Requests
+ * without a valid token are refused with 403, as Spring Security does on the servlet API.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class JwtWebFilter implements WebFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final JwtFilter jwtFilter;
+    private final JwtUtil jwtUtil;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        Authentication authentication = authenticate(exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION));
+        if (authentication == null) {
+            exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN);
+            return exchange.getResponse().setComplete();
+        }
+        return chain.filter(exchange.mutate().principal(Mono.<Principal>just(authentication)).build());
+    }
+
+    private Authentication authenticate(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith(BEARER_PREFIX)) {
+            return null;
+        }
+        try {
+            String token = jwtFilter.tokenDecryption(authHeader.substring(BEARER_PREFIX.length()));
+            String username = jwtUtil.extractUsername(token);
+            if (username == null || !jwtFilter.validateToken(token)) {
+                return null;
+            }
+            Authentication authentication = jwtFilter.getAuthentication(token);
+            return authentication == null
+                    ? null
+                    : new UsernamePasswordAuthenticationToken(authentication, null, authentication.getAuthorities());
+        } catch (RuntimeException e) {
+            log.info("Rejected token on reactive upload server: {}", e.getMessage());
+            return null;
+        }
+    }
+}
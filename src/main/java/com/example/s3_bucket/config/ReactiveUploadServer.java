@@ -0,0 +1,85 @@
+package com.example.s3_bucket.config;
+
+import com.example.s3_bucket.controller.ReactiveUploadHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Runs the v3 upload API on a Reactor Netty server next to the servlet container. The application itself
+ * stays a servlet application, so the WebFlux routes get their own port ({@code s3.reactive.port}) where
+ * request bodies are read with backpressure instead of being buffered by Tomcat.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "s3.reactive.enabled", havingValue = "true")
+public class ReactiveUploadServer implements SmartLifecycle {
+
+    private final ReactiveUploadHandler uploadHandler;
+    private final JwtWebFilter jwtWebFilter;
+    private final ObjectMapper objectMapper;
+
+    @Value("${s3.api.header}")
+    private String apiHeader;
+
+    @Value("${s3.api.end-point.upload-v3}")
+    private String uploadPath;
+
+    @Value("${s3.reactive.port:8085}")
+    private int port;
+
+    private volatile DisposableServer server;
+
+    @Override
+    public void start() {
+        RouterFunction<ServerResponse> routes = RouterFunctions.route(
+                RequestPredicates.POST(apiHeader + uploadPath), uploadHandler::upload);
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(configurer -> {
+                    configurer.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+        HttpHandler httpHandler = WebHttpHandlerBuilder
+                .webHandler(RouterFunctions.toWebHandler(routes, strategies))
+                .filter(jwtWebFilter)
+                .build();
+
+        server = HttpServer.create()
+                .port(port)
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow();
+        log.info("LOG:: Reactive upload server started on port {}", server.port());
+    }
+
+    @Override
+    public void stop() {
+        DisposableServer current = server;
+        if (current != null) {
+            current.disposeNow();
+            server = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+}
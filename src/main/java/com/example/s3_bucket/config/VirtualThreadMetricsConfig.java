@@ -0,0 +1,21 @@
+package com.example.s3_bucket.config;
+
+import io.micrometer.java21.instrument.binder.jdk.VirtualThreadMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Carrier-thread metrics for the virtual-thread mode. {@link VirtualThreadMetrics} records pinned virtual
+ * threads ({@code jvm.threads.virtual.pinned}) and failed submissions to the carrier pool through JFR; the
+ * carrier threads themselves show up in the JVM thread metrics.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadMetricsConfig {
+
+    @Bean(destroyMethod = "close")
+    public VirtualThreadMetrics virtualThreadMetrics() {
+        return new VirtualThreadMetrics();
+    }
+}
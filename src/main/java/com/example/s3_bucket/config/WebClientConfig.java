@@ -1,11 +1,26 @@
 package com.example.s3_bucket.config;
 
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.Http2SslContextSpec;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.time.Duration;
+
+/**
+ * WebClients for the other services. All of them share one Reactor Netty connection pool and client, so
+ * connections are reused across clients and the pool limits apply per remote host. Pool metrics are
+ * published as {@code reactor.netty.connection.provider.*}.
+ */
+@Slf4j
 @Configuration
 public class WebClientConfig {
 
@@ -27,60 +42,123 @@ public class WebClientConfig {
     @Value("${service.base.url.images}")
     private String imagesBaseUrl;
 
-    private ExchangeStrategies createLargeBufferStrategy() {
-        int size = 16 * 1024 * 1024; // 16 MB
-        return ExchangeStrategies.builder()
+    @Value("${aws.image.processing.url}")
+    private String imageProcessingUrl;
+
+    @Value("${aws.image.processing.timeout-ms:15000}")
+    private long imageProcessingTimeoutMs;
+
+    @Value("${service.http.max-connections:100}")
+    private int maxConnections;
+
+    @Value("${service.http.pending-acquire-max-count:500}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${service.http.pending-acquire-timeout-ms:5000}")
+    private long pendingAcquireTimeoutMs;
+
+    @Value("${service.http.max-idle-time-seconds:30}")
+    private long maxIdleTimeSeconds;
+
+    @Value("${service.http.max-life-time-seconds:300}")
+    private long maxLifeTimeSeconds;
+
+    @Value("${service.http.connect-timeout-ms:2000}")
+    private int connectTimeoutMs;
+
+    @Value("${service.http.response-timeout-seconds:10}")
+    private long responseTimeoutSeconds;
+
+    @Value("${service.http.http2:false}")
+    private boolean http2;
+
+    @Value("${service.http.max-in-memory-size:1MB}")
+    private DataSize maxInMemorySize;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider serviceConnectionProvider() {
+        return ConnectionProvider.builder("services")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                // Idle connections are closed before the services' keep-alive timeout would reset them
+                .maxIdleTime(Duration.ofSeconds(maxIdleTimeSeconds))
+                .maxLifeTime(Duration.ofSeconds(maxLifeTimeSeconds))
+                .evictInBackground(Duration.ofSeconds(maxIdleTimeSeconds))
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public ReactorClientHttpConnector serviceHttpConnector(ConnectionProvider serviceConnectionProvider) {
+        return new ReactorClientHttpConnector(createHttpClient(serviceConnectionProvider,
+                Duration.ofSeconds(responseTimeoutSeconds)));
+    }
+
+    private HttpClient createHttpClient(ConnectionProvider connectionProvider, Duration responseTimeout) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(true)
+                .responseTimeout(responseTimeout);
+        if (http2) {
+            // HTTP/2 is negotiated through ALPN, so it only applies to https base URLs
+            log.info("LOG:: Enabling HTTP/2 for service clients");
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11)
+                    .secure(spec -> spec.sslContext(Http2SslContextSpec.forClient()));
+        }
+        return httpClient;
+    }
+
+    private WebClient createWebClient(WebClient.Builder builder, ReactorClientHttpConnector connector, String baseUrl) {
+        // Responses of the services are small JSON documents, there is no need for large codec buffers
+        return builder.clone()
+                .baseUrl(baseUrl)
+                .clientConnector(connector)
                 .codecs(configurer -> configurer
                         .defaultCodecs()
-                        .maxInMemorySize(size))
+                        .maxInMemorySize((int) maxInMemorySize.toBytes()))
                 .build();
     }
 
     @Bean(name = "userWebClient")
-    public WebClient userWebClient() {
-        return WebClient.builder()
-                .baseUrl(userBaseUrl)
-                .exchangeStrategies(createLargeBufferStrategy())
-                .build();
+    public WebClient userWebClient(WebClient.Builder builder, ReactorClientHttpConnector serviceHttpConnector) {
+        return createWebClient(builder, serviceHttpConnector, userBaseUrl);
     }
 
     @Bean(name = "searchWebClient")
-    public WebClient searchWebClient() {
-        return WebClient.builder()
-                .baseUrl(searchBaseUrl)
-                .exchangeStrategies(createLargeBufferStrategy())
-                .build();
+    public WebClient searchWebClient(WebClient.Builder builder, ReactorClientHttpConnector serviceHttpConnector) {
+        return createWebClient(builder, serviceHttpConnector, searchBaseUrl);
     }
 
     @Bean(name = "feedWebClient")
-    public WebClient feedWebClient() {
-        return WebClient.builder()
-                .baseUrl(feedBaseUrl)
-                .exchangeStrategies(createLargeBufferStrategy())
-                .build();
+    public WebClient feedWebClient(WebClient.Builder builder, ReactorClientHttpConnector serviceHttpConnector) {
+        return createWebClient(builder, serviceHttpConnector, feedBaseUrl);
     }
 
     @Bean(name = "reelWebClient")
-    public WebClient reelWebClient() {
-        return WebClient.builder()
-                .baseUrl(reelBaseUrl)
-                .exchangeStrategies(createLargeBufferStrategy())
-                .build();
+    public WebClient reelWebClient(WebClient.Builder builder, ReactorClientHttpConnector serviceHttpConnector) {
+        return createWebClient(builder, serviceHttpConnector, reelBaseUrl);
     }
 
     @Bean(name = "trickWebClient")
-    public WebClient trickWebClient() {
-        return WebClient.builder()
-                .baseUrl(trickBaseUrl)
-                .exchangeStrategies(createLargeBufferStrategy())
-                .build();
+    public WebClient trickWebClient(WebClient.Builder builder, ReactorClientHttpConnector serviceHttpConnector) {
+        return createWebClient(builder, serviceHttpConnector, trickBaseUrl);
     }
 
     @Bean(name = "imagesWebClient")
-    public WebClient imagesWebClient() {
-        return WebClient.builder()
-                .baseUrl(imagesBaseUrl)
-                .exchangeStrategies(createLargeBufferStrategy())
-                .build();
+    public WebClient imagesWebClient(WebClient.Builder builder, ReactorClientHttpConnector serviceHttpConnector) {
+        return createWebClient(builder, serviceHttpConnector, imagesBaseUrl);
+    }
+
+    /**
+     * The image-processing Lambda renders every variant before it answers, so it gets its own response
+     * timeout; connections still come from the shared pool.
+     */
+    @Bean(name = "imageProcessingWebClient")
+    public WebClient imageProcessingWebClient(WebClient.Builder builder, ConnectionProvider serviceConnectionProvider) {
+        ReactorClientHttpConnector connector = new ReactorClientHttpConnector(createHttpClient(serviceConnectionProvider,
+                Duration.ofMillis(imageProcessingTimeoutMs)));
+        return createWebClient(builder, connector, imageProcessingUrl);
     }
-}
\ No newline at end of file
+}
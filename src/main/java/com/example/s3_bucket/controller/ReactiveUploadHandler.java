@@ -0,0 +1,111 @@
+package com.example.s3_bucket.controller;
+
+import com.example.s3_bucket.dto.CommonResponse;
+import com.example.s3_bucket.dto.MetaData;
+import com.example.s3_bucket.enums.CommonMessages;
+import com.example.s3_bucket.enums.ImageType;
+import com.example.s3_bucket.enums.StatusType;
+import com.example.s3_bucket.exceptions.TranscodeRejectedException;
+import com.example.s3_bucket.service.S3Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.FormPartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * v3 upload API served by the WebFlux server. The multipart body is read as {@link PartEvent}s, so the
+ * file part is handed to S3 chunk by chunk instead of being buffered as a {@code MultipartFile}.
+ * {@code imageType} may be a query parameter or a form field sent before the file part.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReactiveUploadHandler {
+
+    private static final String FILE_PARAM = "file";
+    private static final String IMAGE_TYPE_PARAM = "imageType";
+    private static final String TOKEN_ERROR_MESSAGE = "Token should not be empty";
+
+    private final S3Service s3Service;
+
+    public Mono<ServerResponse> upload(ServerRequest request) {
+        String token = request.headers().firstHeader(HttpHeaders.AUTHORIZATION);
+        return request.principal()
+                .filter(principal -> principal.getName() != null && !principal.getName().isEmpty())
+                .flatMap(principal -> receive(request, principal.getName(), token))
+                .switchIfEmpty(Mono.defer(() -> {
+                    log.warn("Invalid principal detected during reactive upload");
+                    return error(TOKEN_ERROR_MESSAGE, "Token is not recognized");
+                }));
+    }
+
+    private Mono<ServerResponse> receive(ServerRequest request, String authUserId, String token) {
+        AtomicReference<String> imageType = new AtomicReference<>(
+                request.queryParam(IMAGE_TYPE_PARAM).orElse(ImageType.POST.name()));
+        return request.bodyToFlux(PartEvent.class)
+                .windowUntil(PartEvent::isLast)
+                .concatMap(partEvents -> partEvents.switchOnFirst((first, events) -> {
+                    if (first.get() instanceof FilePartEvent filePart && FILE_PARAM.equals(filePart.name())) {
+                        return upload(events, filePart.filename(), authUserId, token, imageType.get());
+                    }
+                    if (first.get() instanceof FormPartEvent formPart && IMAGE_TYPE_PARAM.equals(formPart.name())) {
+                        imageType.set(formPart.value());
+                    }
+                    // Other parts are drained so the next part can be read
+                    return events.doOnNext(event -> DataBufferUtils.release(event.content()))
+                            .then(Mono.<ServerResponse>empty());
+                }), 1)
+                // Part events still queued in a window when the request is cancelled or the client disconnects
+                .doOnDiscard(PartEvent.class, event -> DataBufferUtils.release(event.content()))
+                .next()
+                .switchIfEmpty(Mono.defer(() -> error("Required part 'file' is missing", "Error in image upload")));
+    }
+
+    private Mono<ServerResponse> upload(Flux<PartEvent> events, String fileName, String authUserId, String token,
+                                        String imageType) {
+        ImageType type;
+        try {
+            type = ImageType.valueOf(imageType);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid image type provided: {}", imageType);
+            return events.doOnNext(event -> DataBufferUtils.release(event.content()))
+                    .then(error("Invalid image type", "The provided image type is not supported"));
+        }
+
+        log.info("Processing reactive upload request for file: {}", fileName);
+        return s3Service.uploadFileContent(events.map(PartEvent::content), fileName, authUserId, token, type)
+                .flatMap(response -> ServerResponse.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(response))
+                .onErrorResume(TranscodeRejectedException.class, e -> ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(CommonResponse.builder()
+                                .data(e.getMessage())
+                                .meta(new MetaData(true, CommonMessages.SERVICE_UNAVAILABLE, 503, "Transcode queue is full"))
+                                .status(StatusType.STATUS_FAIL)
+                                .build()));
+    }
+
+    private static Mono<ServerResponse> error(String message, String details) {
+        return ServerResponse.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(CommonResponse.builder()
+                        .data(message)
+                        .meta(new MetaData(true, CommonMessages.INTERNAL_SERVER_ERROR, 500, details))
+                        .status(StatusType.STATUS_FAIL)
+                        .build());
+    }
+}
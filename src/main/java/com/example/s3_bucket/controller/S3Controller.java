@@ -1,25 +1,36 @@
 package com.example.s3_bucket.controller;
 
 import com.example.s3_bucket.dto.*;
+import com.example.s3_bucket.service.DirectUploadService;
+import com.example.s3_bucket.service.ImageVariantService;
+import com.example.s3_bucket.service.ResumableUploadService;
 import com.example.s3_bucket.service.S3Service;
+import com.example.s3_bucket.service.UploadJobService;
 import com.example.s3_bucket.annotation.CurrentUser;
 import com.example.s3_bucket.annotation.TrackExecutionTime;
 import com.example.s3_bucket.enums.CommonMessages;
 import com.example.s3_bucket.enums.ImageType;
+import com.example.s3_bucket.enums.ImageVariant;
 import com.example.s3_bucket.enums.StatusType;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.*;
 import org.springframework.lang.NonNull;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 
 import java.io.IOException;
+import java.net.URI;
 import java.security.Principal;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @Validated
@@ -29,13 +40,24 @@ import java.util.Optional;
 public class S3Controller {
 
     private final S3Service s3Service;
+    private final UploadJobService uploadJobService;
+    private final DirectUploadService directUploadService;
+    private final ResumableUploadService resumableUploadService;
+    private final ImageVariantService imageVariantService;
     private final RestTemplate restTemplate;
 
     private static final String TOKEN_ERROR_MESSAGE = "Token should not be empty";
     private static final String FILE_PARAM = "file";
+    private static final String FILES_PARAM = "files";
     private static final String IMAGE_URL_PARAM = "imageUrl";
     private static final String IMAGE_TYPE_PARAM = "imageType";
     private static final String AUTH_HEADER = "Authorization";
+    private static final String FILE_NAME_PARAM = "fileName";
+    private static final String TUS_RESUMABLE_HEADER = "Tus-Resumable";
+    private static final String TUS_VERSION = "1.0.0";
+    private static final String UPLOAD_LENGTH_HEADER = "Upload-Length";
+    private static final String UPLOAD_OFFSET_HEADER = "Upload-Offset";
+    private static final String OFFSET_OCTET_STREAM = "application/offset+octet-stream";
 
     @Value("${s3.api.end-point.update-URL}")
     private String imageServiceUrl;
@@ -110,6 +132,315 @@ public class S3Controller {
         }
     }
 
+    @TrackExecutionTime
+    @PostMapping("${s3.api.end-point.upload-batch}")
+    public ResponseEntity<CommonResponse> uploadFiles(
+            @RequestPart(FILES_PARAM) List<MultipartFile> files,
+            @RequestPart(value = IMAGE_TYPE_PARAM, required = false) String imageType,
+            @CurrentUser Principal principal,
+            @RequestHeader(AUTH_HEADER) String token) {
+
+        log.info("Processing batch upload request with {} files", files.size());
+
+        if (isPrincipalValid(principal)) {
+            log.warn("Invalid principal detected during batch upload");
+            return handleTokenError();
+        }
+
+        try {
+            ImageType type = imageType == null ? ImageType.POST : ImageType.valueOf(imageType);
+            CommonResponse response = s3Service.uploadFiles(files, principal.getName(), token, type);
+            return ResponseEntity.status(response.getMeta().getStatusCode()).body(response);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid image type provided: {}", imageType, e);
+            return handleError("Invalid image type", "The provided image type is not supported");
+        }
+    }
+
+    @TrackExecutionTime
+    @PostMapping("${s3.api.end-point.direct-upload}")
+    public ResponseEntity<CommonResponse> initiateDirectUpload(
+            @RequestBody DirectUploadRequest request,
+            @CurrentUser Principal principal,
+            @RequestHeader(AUTH_HEADER) String token) {
+
+        log.info("Processing direct upload request for file: {}", request.getFileName());
+
+        if (isPrincipalValid(principal)) {
+            log.warn("Invalid principal detected during direct upload");
+            return handleTokenError();
+        }
+
+        try {
+            DirectUploadDto upload = directUploadService.initiate(request, principal.getName());
+            return ResponseEntity.ok(CommonResponse.builder()
+                    .data(upload)
+                    .meta(new MetaData(false, CommonMessages.REQUEST_SUCCESS, 200, "Upload URL created"))
+                    .status(StatusType.STATUS_SUCCESS)
+                    .build());
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid direct upload request for file: {}", request.getFileName(), e);
+            return handleError(e.getMessage(), "Error in image upload");
+        }
+    }
+
+    @TrackExecutionTime
+    @PostMapping("${s3.api.end-point.direct-complete}")
+    public ResponseEntity<CommonResponse> completeDirectUpload(
+            @RequestBody DirectUploadCompleteRequest request,
+            @CurrentUser Principal principal,
+            @RequestHeader(AUTH_HEADER) String token) {
+
+        log.info("Completing direct upload of: {}", request.getKey());
+
+        if (isPrincipalValid(principal)) {
+            log.warn("Invalid principal detected during direct upload completion");
+            return handleTokenError();
+        }
+
+        ImageType type;
+        try {
+            type = request.getImageType() == null ? ImageType.POST : ImageType.valueOf(request.getImageType());
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid image type provided: {}", request.getImageType(), e);
+            return handleError("Invalid image type", "The provided image type is not supported");
+        }
+
+        CommonResponse response = directUploadService.complete(request, principal.getName(), token, type);
+        return ResponseEntity.status(response.getMeta().getStatusCode()).body(response);
+    }
+
+    @TrackExecutionTime
+    @PostMapping("${s3.api.end-point.upload-resumable}")
+    public ResponseEntity<CommonResponse> createResumableUpload(
+            @RequestParam(FILE_NAME_PARAM) String fileName,
+            @RequestParam(value = IMAGE_TYPE_PARAM, defaultValue = "POST") String imageType,
+            @RequestHeader(UPLOAD_LENGTH_HEADER) long length,
+            @CurrentUser Principal principal,
+            HttpServletRequest request) {
+
+        log.info("Creating resumable upload for file: {}", fileName);
+
+        if (isPrincipalValid(principal)) {
+            log.warn("Invalid principal detected during resumable upload");
+            return handleTokenError();
+        }
+
+        try {
+            ResumableUploadDto upload = resumableUploadService.create(fileName, length, ImageType.valueOf(imageType),
+                    principal.getName());
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header(HttpHeaders.LOCATION, request.getRequestURL() + "/" + upload.getUploadId())
+                    .header(TUS_RESUMABLE_HEADER, TUS_VERSION)
+                    .header(UPLOAD_OFFSET_HEADER, String.valueOf(upload.getOffset()))
+                    .body(CommonResponse.builder()
+                            .data(upload)
+                            .meta(new MetaData(false, CommonMessages.REQUEST_SUCCESS, 201, "Resumable upload created"))
+                            .status(StatusType.STATUS_SUCCESS)
+                            .build());
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid resumable upload request for file: {}", fileName, e);
+            return handleError(e.getMessage(), "Error in image upload");
+        }
+    }
+
+    @RequestMapping(value = "${s3.api.end-point.upload-resumable}/{uploadId}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> getResumableUploadOffset(@PathVariable String uploadId,
+                                                         @CurrentUser Principal principal) {
+        if (isPrincipalValid(principal)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        return resumableUploadService.getUpload(uploadId, principal.getName())
+                .map(upload -> ResponseEntity.ok()
+                        .header(TUS_RESUMABLE_HEADER, TUS_VERSION)
+                        .header(UPLOAD_OFFSET_HEADER, String.valueOf(upload.getOffset()))
+                        .header(UPLOAD_LENGTH_HEADER, String.valueOf(upload.getLength()))
+                        .cacheControl(CacheControl.noStore())
+                        .<Void>build())
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @TrackExecutionTime
+    @PatchMapping(value = "${s3.api.end-point.upload-resumable}/{uploadId}", consumes = OFFSET_OCTET_STREAM)
+    public ResponseEntity<CommonResponse> appendResumableUpload(
+            @PathVariable String uploadId,
+            @RequestHeader(UPLOAD_OFFSET_HEADER) long offset,
+            @CurrentUser Principal principal,
+            @RequestHeader(AUTH_HEADER) String token,
+            HttpServletRequest request) {
+
+        if (isPrincipalValid(principal)) {
+            log.warn("Invalid principal detected during resumable upload");
+            return handleTokenError();
+        }
+
+        try {
+            Optional<ResumableUploadDto> upload = resumableUploadService.append(uploadId, offset,
+                    request.getContentLengthLong(), request.getInputStream(), principal.getName(), token);
+            if (upload.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(CommonResponse.builder()
+                        .data("Resumable upload not found: " + uploadId)
+                        .meta(new MetaData(true, CommonMessages.RESOURCE_NOT_FOUND, 404, "Unknown resumable upload"))
+                        .status(StatusType.STATUS_FAIL)
+                        .build());
+            }
+            // Chunks are acknowledged with 204, the last one returns the processed upload
+            CommonResponse result = upload.get().getResult();
+            return ResponseEntity.status(result == null ? HttpStatus.NO_CONTENT.value() : result.getMeta().getStatusCode())
+                    .header(TUS_RESUMABLE_HEADER, TUS_VERSION)
+                    .header(UPLOAD_OFFSET_HEADER, String.valueOf(upload.get().getOffset()))
+                    .body(result);
+        } catch (IllegalStateException e) {
+            log.warn("Rejected chunk for resumable upload {}: {}", uploadId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(CommonResponse.builder()
+                    .data(e.getMessage())
+                    .meta(new MetaData(true, CommonMessages.REQUEST_CONFLICT, 409, "Upload offset conflict"))
+                    .status(StatusType.STATUS_FAIL)
+                    .build());
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected chunk for resumable upload {}: {}", uploadId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(CommonResponse.builder()
+                    .data(e.getMessage())
+                    .meta(new MetaData(true, CommonMessages.REQUEST_FAIL, 413, "Chunk exceeds upload length"))
+                    .status(StatusType.STATUS_FAIL)
+                    .build());
+        } catch (IOException e) {
+            log.error("Chunk for resumable upload {} was interrupted", uploadId, e);
+            return handleError(e.getMessage(), "Upload interrupted, resume from the stored offset");
+        }
+    }
+
+    @DeleteMapping("${s3.api.end-point.upload-resumable}/{uploadId}")
+    public ResponseEntity<Void> cancelResumableUpload(@PathVariable String uploadId,
+                                                      @CurrentUser Principal principal) {
+        if (isPrincipalValid(principal)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        try {
+            return resumableUploadService.cancel(uploadId, principal.getName())
+                    ? ResponseEntity.noContent().header(TUS_RESUMABLE_HEADER, TUS_VERSION).build()
+                    : ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @TrackExecutionTime
+    @PostMapping(value = "${s3.api.end-point.upload-stream}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<CommonResponse> uploadFileStream(
+            @RequestParam(FILE_NAME_PARAM) String fileName,
+            @RequestParam(value = IMAGE_TYPE_PARAM, defaultValue = "POST") String imageType,
+            @CurrentUser Principal principal,
+            @RequestHeader(AUTH_HEADER) String token,
+            HttpServletRequest request) {
+
+        log.info("Processing streaming upload request for file: {}", fileName);
+
+        if (isPrincipalValid(principal)) {
+            log.warn("Invalid principal detected during streaming upload");
+            return handleTokenError();
+        }
+
+        try {
+            CommonResponse response = s3Service.uploadFileStream(request.getInputStream(), fileName,
+                    principal.getName(), token, ImageType.valueOf(imageType));
+            return ResponseEntity.ok(response);
+        } catch (IOException e) {
+            log.error("Failed to stream file", e);
+            return handleError(e.getMessage(), "Error in image upload");
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid image type provided: {}", imageType, e);
+            return handleError("Invalid image type", "The provided image type is not supported");
+        }
+    }
+
+    @TrackExecutionTime
+    @PostMapping("${s3.api.end-point.upload-async}")
+    public ResponseEntity<CommonResponse> uploadFileAsync(
+            @RequestPart(FILE_PARAM) MultipartFile file,
+            @RequestPart(value = IMAGE_TYPE_PARAM, required = false) String imageType,
+            @CurrentUser Principal principal,
+            @RequestHeader(AUTH_HEADER) String token) {
+
+        log.info("Processing asynchronous upload request");
+
+        if (isPrincipalValid(principal)) {
+            log.warn("Invalid principal detected during asynchronous upload");
+            return handleTokenError();
+        }
+
+        try {
+            ImageType type = imageType == null ? ImageType.POST : ImageType.valueOf(imageType);
+            UploadJobDto job = uploadJobService.submit(file, principal.getName(), token, type);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(CommonResponse.builder()
+                    .data(job)
+                    .meta(new MetaData(false, CommonMessages.REQUEST_ACCEPTED, 202, "Upload job accepted"))
+                    .status(StatusType.STATUS_PENDING)
+                    .build());
+        } catch (TaskRejectedException e) {
+            log.warn("Upload job queue is full", e);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(CommonResponse.builder()
+                    .data("Upload queue is full, retry later")
+                    .meta(new MetaData(true, CommonMessages.SERVICE_UNAVAILABLE, 503, "Upload job rejected"))
+                    .status(StatusType.STATUS_FAIL)
+                    .build());
+        } catch (IOException e) {
+            log.error("Failed to queue upload job", e);
+            return handleError(e.getMessage(), "Error in image upload");
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid upload job request: {}", e.getMessage());
+            return handleError("Invalid upload request", e.getMessage());
+        }
+    }
+
+    @GetMapping("${s3.api.end-point.job-status}/{jobId}")
+    public ResponseEntity<CommonResponse> getUploadJob(@PathVariable String jobId,
+                                                       @CurrentUser Principal principal) {
+        if (isPrincipalValid(principal)) {
+            return handleTokenError();
+        }
+
+        return uploadJobService.getJob(jobId, principal.getName())
+                .map(job -> ResponseEntity.ok(CommonResponse.builder()
+                        .data(job)
+                        .meta(new MetaData(false, CommonMessages.REQUEST_SUCCESS, 200, job.getStatus().name()))
+                        .status(StatusType.STATUS_SUCCESS)
+                        .build()))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(CommonResponse.builder()
+                        .data("Upload job not found: " + jobId)
+                        .meta(new MetaData(true, CommonMessages.RESOURCE_NOT_FOUND, 404, "Unknown upload job"))
+                        .status(StatusType.STATUS_FAIL)
+                        .build()));
+    }
+
+    /**
+     * Redirects to a variant of an uploaded image. Variants that have not been rendered yet, e.g. with
+     * {@code image.variants.lazy}, are rendered on this first request.
+     */
+    @GetMapping("${s3.api.end-point.image-variant}/{variant}/{fileName:.+}")
+    public ResponseEntity<Void> getImageVariant(@PathVariable String variant,
+                                                @PathVariable String fileName) {
+        Optional<ImageVariant> imageVariant = ImageVariant.fromField(variant);
+        if (imageVariant.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            String url = imageVariantService.getVariantUrl(fileName, imageVariant.get()).join();
+            return url == null
+                    ? ResponseEntity.unprocessableEntity().build()
+                    : ResponseEntity.status(HttpStatus.FOUND).location(URI.create(url)).build();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof S3Exception s3Exception && s3Exception.statusCode() == 404) {
+                return ResponseEntity.notFound().build();
+            }
+            log.error("Failed to render {} variant of {}", variant, fileName, e.getCause());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @TrackExecutionTime
     @PostMapping("${s3.api.end-point.update}")
     public ResponseEntity<CommonResponse> updateFile(
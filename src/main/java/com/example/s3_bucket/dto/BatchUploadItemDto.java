@@ -0,0 +1,18 @@
+package com.example.s3_bucket.dto;
+
+import com.example.s3_bucket.enums.StatusType;
+import lombok.*;
+
+@Data
+@Builder
+@ToString
+@AllArgsConstructor
+@RequiredArgsConstructor
+public class BatchUploadItemDto {
+
+    private String fileName;
+    private StatusType status;
+    private ImageDto result;
+    private String message;
+
+}
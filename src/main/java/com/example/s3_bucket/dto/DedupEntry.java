@@ -0,0 +1,27 @@
+package com.example.s3_bucket.dto;
+
+import lombok.*;
+
+/**
+ * What an already-processed upload produced, keyed by its uploader and the SHA-256 of its original bytes.
+ * {@code etag} is the ETag the stored object had when the entry was recorded.
+ */
+@Data
+@Builder
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class DedupEntry {
+
+    private String ownerId;
+    private String contentHash;
+    private String s3Key;
+    private String etag;
+    private String url;
+    private boolean moderated;
+    private boolean inappropriate;
+    private ImageProcessingResponseDTO.Urls variantUrls;
+    private String hlsUrl;
+    private long recordedAt;
+
+}
@@ -0,0 +1,26 @@
+package com.example.s3_bucket.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DirectUploadCompleteRequest {
+
+    private String key;
+    private String uploadId;
+    private String imageType;
+    private List<Part> parts;
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Part {
+        private int partNumber;
+        private String etag;
+    }
+}
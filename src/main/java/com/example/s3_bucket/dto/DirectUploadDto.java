@@ -0,0 +1,37 @@
+package com.example.s3_bucket.dto;
+
+import lombok.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where and how a client uploads a file straight to the bucket. Small files get a single presigned PUT
+ * {@code url}; larger files get an {@code uploadId} and one presigned URL per part. Every request must carry
+ * the {@code headers} that were signed.
+ */
+@Data
+@Builder
+@ToString
+@AllArgsConstructor
+@NoArgsConstructor
+public class DirectUploadDto {
+
+    private String key;
+    private String uploadId;
+    private String url;
+    private Long partSize;
+    private List<PresignedPart> parts;
+    private Map<String, String> headers;
+    private Instant expiresAt;
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class PresignedPart {
+        private int partNumber;
+        private String url;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.s3_bucket.dto;
+
+import lombok.*;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DirectUploadRequest {
+
+    private String fileName;
+    private Long contentLength;
+
+}
@@ -11,5 +11,6 @@ public class ImageDto {
 
     private String imageUrl;
     private String encryptUrl;
+    private String hlsUrl;      // Master playlist of the HLS ladder, only for videos packaged as HLS
 
 }
@@ -13,4 +13,10 @@ public class ProcessedFileInfo {
     private String finalFilename;
     private String extensionType;
     private boolean inappropriate;
+    private boolean uploaded;
+    private boolean moderated;
+    private String ownerId;
+    private String contentHash;
+    private VideoCompressionResult compression;
+    private String hlsKey;
 }
@@ -0,0 +1,25 @@
+package com.example.s3_bucket.dto;
+
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Progress of a resumable upload. {@code offset} is the number of bytes the server has stored; the client
+ * continues from there after a dropped connection. {@code result} is set once the last chunk was processed.
+ */
+@Data
+@Builder
+@ToString
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResumableUploadDto {
+
+    private String uploadId;
+    private String fileName;
+    private long offset;
+    private long length;
+    private Instant expiresAt;
+    private CommonResponse result;
+
+}
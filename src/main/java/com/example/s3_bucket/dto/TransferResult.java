@@ -0,0 +1,14 @@
+package com.example.s3_bucket.dto;
+
+import lombok.*;
+
+@Getter
+@Builder
+@ToString
+@AllArgsConstructor
+public class TransferResult {
+    private String key;
+    private long contentLength;
+    private int partCount;
+    private String contentHash;
+}
@@ -0,0 +1,22 @@
+package com.example.s3_bucket.dto;
+
+import com.example.s3_bucket.enums.JobStatus;
+import lombok.*;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@ToString
+@AllArgsConstructor
+@RequiredArgsConstructor
+public class UploadJobDto {
+
+    private String jobId;
+    private JobStatus status;
+    private ImageDto result;
+    private String message;
+    private Instant createdAt;
+    private Instant updatedAt;
+
+}
@@ -0,0 +1,19 @@
+package com.example.s3_bucket.dto;
+
+import com.example.s3_bucket.enums.VideoCompressionMode;
+import lombok.*;
+
+@Getter
+@Builder
+@ToString
+@AllArgsConstructor
+public class VideoCompressionResult {
+    private VideoCompressionMode mode;
+    private VideoProbe probe;         // null when the input could not be probed
+    private long elapsedMillis;
+    // Encoder settings, null for a remux
+    private Integer crf;
+    private Integer maxrateKbps;
+    private String preset;
+    private Double complexity;        // 0 (static) to 1 (high motion), null when per-title encoding was not used
+}
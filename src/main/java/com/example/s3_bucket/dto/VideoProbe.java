@@ -0,0 +1,31 @@
+package com.example.s3_bucket.dto;
+
+import lombok.*;
+
+/**
+ * The parts of an ffprobe report that decide how a video is processed. Unknown numbers are 0, a missing
+ * audio stream has a {@code null} codec.
+ */
+@Getter
+@Builder
+@ToString
+@AllArgsConstructor
+public class VideoProbe {
+    private String formatName;
+    private String videoCodec;
+    private String pixelFormat;
+    private int width;
+    private int height;
+    private int rotation;
+    private double frameRate;
+    private long videoBitrate;
+    private String audioCodec;
+    private double durationSeconds;
+
+    /**
+     * Width as displayed, with the rotation from the container applied.
+     */
+    public int getDisplayWidth() {
+        return Math.abs(rotation) % 180 == 90 ? height : width;
+    }
+}
@@ -9,11 +9,15 @@ import lombok.Getter;
 @Getter
 public enum CommonMessages {
     REQUEST_SUCCESS("Success Request", 200),
+    REQUEST_ACCEPTED("Request Accepted", 202),
+    PARTIAL_SUCCESS("Partial Success", 207),
     BAD_CREDENTIALS("Bad Credentials", 401),
     FORBIDDEN_ACCESS("Forbidden Access", 403),
     REQUEST_FAIL("Failed Request", 400),
+    RESOURCE_NOT_FOUND("Resource Not Found", 404),
     REQUEST_NO_LONGER_USED("Resource No Longer Used", 410),
     INTERNAL_SERVER_ERROR("Internal Server Error", 500),
+    SERVICE_UNAVAILABLE("Service Unavailable", 503),
     REQUEST_CONFLICT("Conflict Request", 409),
     INAPPROPRIATE_CONTENT("Content Not Allowed", 422);
 
@@ -0,0 +1,13 @@
+package com.example.s3_bucket.enums;
+
+/**
+ * How images are handed to Rekognition for moderation.
+ */
+public enum ImageModerationMode {
+    /** Read the staged file and send its bytes, then upload after the verdict. */
+    INLINE_BYTES,
+    /** Upload to the quarantine prefix first, then moderate by S3 object reference. */
+    S3_REFERENCE,
+    /** Upload to quarantine while the bytes are moderated in parallel. */
+    SPECULATIVE
+}
@@ -0,0 +1,66 @@
+package com.example.s3_bucket.enums;
+
+import com.example.s3_bucket.dto.ImageProcessingResponseDTO;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Renditions generated for every uploaded image, matching the fields of {@link ImageProcessingResponseDTO.Urls}.
+ * Cropped variants are centre-cropped to the target aspect ratio; the others are only scaled down to fit.
+ */
+@Getter
+public enum ImageVariant {
+    PROFILE("profile", 400, 400, true,
+            ImageProcessingResponseDTO.Urls::getProfile, ImageProcessingResponseDTO.Urls::setProfile),
+    SQUARE("square", 1080, 1080, true,
+            ImageProcessingResponseDTO.Urls::getSquare, ImageProcessingResponseDTO.Urls::setSquare),
+    PORTRAIT("portrait", 1080, 1350, true,
+            ImageProcessingResponseDTO.Urls::getPortrait, ImageProcessingResponseDTO.Urls::setPortrait),
+    LANDSCAPE("landscape", 1080, 608, true,
+            ImageProcessingResponseDTO.Urls::getLandscape, ImageProcessingResponseDTO.Urls::setLandscape),
+    STORY("story", 1080, 1920, true,
+            ImageProcessingResponseDTO.Urls::getStory, ImageProcessingResponseDTO.Urls::setStory),
+    REEL_COVER_SAFE_ZONE("reelCoverSafeZone", 1080, 1440, true,
+            ImageProcessingResponseDTO.Urls::getReelCoverSafeZone, ImageProcessingResponseDTO.Urls::setReelCoverSafeZone),
+    THUMBNAIL("thumbnail", 320, 320, false,
+            ImageProcessingResponseDTO.Urls::getThumbnail, ImageProcessingResponseDTO.Urls::setThumbnail);
+
+    private final String field;
+    private final int width;
+    private final int height;
+    private final boolean crop;
+    private final Function<ImageProcessingResponseDTO.Urls, String> urlGetter;
+    private final BiConsumer<ImageProcessingResponseDTO.Urls, String> urlSetter;
+
+    ImageVariant(String field, int width, int height, boolean crop,
+                 Function<ImageProcessingResponseDTO.Urls, String> urlGetter,
+                 BiConsumer<ImageProcessingResponseDTO.Urls, String> urlSetter) {
+        this.field = field;
+        this.width = width;
+        this.height = height;
+        this.crop = crop;
+        this.urlGetter = urlGetter;
+        this.urlSetter = urlSetter;
+    }
+
+    /**
+     * The variant whose URL is returned to the client for an upload of the given type.
+     */
+    public static ImageVariant forImageType(ImageType imageType) {
+        return switch (imageType) {
+            case SIGNATURE -> LANDSCAPE;
+            case PROFILE_IMAGE, CLUB_LOGO, COVER_IMAGE, PROFILE_BANNER_IMAGE -> PROFILE;
+            default -> STORY;
+        };
+    }
+
+    public static Optional<ImageVariant> fromField(String field) {
+        return Arrays.stream(values())
+                .filter(variant -> variant.field.equalsIgnoreCase(field))
+                .findFirst();
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.s3_bucket.enums;
+
+/**
+ * Where the image variants listed in {@link ImageVariant} are produced.
+ */
+public enum ImageVariantEngine {
+    /** Render the variants in-process from the bytes already at hand. */
+    LOCAL,
+    /** Ask the image-processing Lambda, which downloads the original again. */
+    LAMBDA
+}
@@ -0,0 +1,11 @@
+package com.example.s3_bucket.enums;
+
+/**
+ * Lifecycle of an asynchronous upload job.
+ */
+public enum JobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED
+}
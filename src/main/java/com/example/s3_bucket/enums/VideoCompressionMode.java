@@ -0,0 +1,6 @@
+package com.example.s3_bucket.enums;
+
+public enum VideoCompressionMode {
+    TRANSCODE,   // Full libx264 encode to the upload profile
+    REMUX        // Streams copied into a faststart container, the input already met the profile
+}
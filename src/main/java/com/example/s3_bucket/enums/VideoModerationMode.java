@@ -0,0 +1,11 @@
+package com.example.s3_bucket.enums;
+
+/**
+ * How uploaded videos are moderated.
+ */
+public enum VideoModerationMode {
+    /** Rekognition content moderation job over the whole compressed video in the bucket. */
+    VIDEO_JOB,
+    /** Sampled frames of the original, decoded while it is compressed and moderated as images. */
+    KEYFRAMES
+}
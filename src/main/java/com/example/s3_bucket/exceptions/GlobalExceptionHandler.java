@@ -1,6 +1,13 @@
 package com.example.s3_bucket.exceptions;
 
+import com.example.s3_bucket.dto.CommonResponse;
+import com.example.s3_bucket.dto.MetaData;
+import com.example.s3_bucket.enums.CommonMessages;
+import com.example.s3_bucket.enums.StatusType;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.multipart.MultipartException;
@@ -19,6 +26,17 @@ public class GlobalExceptionHandler extends Exception {
 
     }
 
+    @ExceptionHandler(TranscodeRejectedException.class)
+    public ResponseEntity<CommonResponse> handleTranscodeRejected(TranscodeRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(CommonResponse.builder()
+                        .data(e.getMessage())
+                        .meta(new MetaData(true, CommonMessages.SERVICE_UNAVAILABLE, 503, "Transcode queue is full"))
+                        .status(StatusType.STATUS_FAIL)
+                        .build());
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public String handleError1(RuntimeException e, RedirectAttributes redirectAttributes) {
 
@@ -0,0 +1,18 @@
+package com.example.s3_bucket.exceptions;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a video upload is refused because the transcode queue is full. The request can be retried
+ * after {@code retryAfterSeconds}.
+ */
+@Getter
+public class TranscodeRejectedException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public TranscodeRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+}
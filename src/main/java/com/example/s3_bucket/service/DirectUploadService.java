@@ -0,0 +1,22 @@
+package com.example.s3_bucket.service;
+
+import com.example.s3_bucket.dto.CommonResponse;
+import com.example.s3_bucket.dto.DirectUploadCompleteRequest;
+import com.example.s3_bucket.dto.DirectUploadDto;
+import com.example.s3_bucket.dto.DirectUploadRequest;
+import com.example.s3_bucket.enums.ImageType;
+
+public interface DirectUploadService {
+
+    /**
+     * Reserves a private staging key for the user and presigns the request(s) that upload the file to it.
+     */
+    DirectUploadDto initiate(DirectUploadRequest request, String authUserId);
+
+    /**
+     * Called once the client has uploaded the file. Completes the multipart upload if there is one, then runs
+     * moderation, compression and variant generation against the stored object.
+     */
+    CommonResponse complete(DirectUploadCompleteRequest request, String authUserId, String token, ImageType imageType);
+
+}
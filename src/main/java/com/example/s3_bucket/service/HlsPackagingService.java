@@ -0,0 +1,26 @@
+package com.example.s3_bucket.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+public interface HlsPackagingService {
+
+    boolean isEnabled();
+
+    /**
+     * Encodes {@code inputFile} into the HLS rendition ladder and uploads it under {@code keyPrefix}. Segments
+     * are uploaded as soon as ffmpeg closes them, the playlists once the encode has finished. Completing
+     * {@code abort} kills the encode and fails the packaging. Nothing is left under the prefix when packaging
+     * fails.
+     *
+     * @return the key of the master playlist
+     */
+    String packageVideo(File inputFile, String keyPrefix, CompletableFuture<?> abort) throws IOException;
+
+    /**
+     * Deletes everything uploaded under {@code keyPrefix}.
+     */
+    void deletePackage(String keyPrefix);
+
+}
@@ -0,0 +1,48 @@
+package com.example.s3_bucket.service;
+
+import com.example.s3_bucket.dto.ImageProcessingResponseDTO;
+import com.example.s3_bucket.enums.ImageVariant;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+public interface ImageVariantService {
+
+    /**
+     * Renders every {@link ImageVariant} from the encoded image and uploads them.
+     * Completes with {@code null} when the image cannot be decoded.
+     */
+    CompletableFuture<ImageProcessingResponseDTO.Urls> generateVariants(byte[] image, String fileName);
+
+    /**
+     * Renders only the given variants; the other URLs of the result stay {@code null}.
+     * Completes with {@code null} when the image cannot be decoded.
+     */
+    CompletableFuture<ImageProcessingResponseDTO.Urls> generateVariants(byte[] image, String fileName,
+                                                                        Set<ImageVariant> variants);
+
+    /**
+     * Same as {@link #generateVariants(byte[], String, Set)} for an image that is only in the bucket.
+     */
+    CompletableFuture<ImageProcessingResponseDTO.Urls> generateVariants(String s3Key, String fileName,
+                                                                        Set<ImageVariant> variants);
+
+    /**
+     * Queues the given variants for low-priority background rendering from the object under {@code s3Key}.
+     * Variants that do not fit in the queue are left to {@link #getVariantUrl(String, ImageVariant)}.
+     */
+    void scheduleVariants(String s3Key, String fileName, Set<ImageVariant> variants);
+
+    /**
+     * Forgets the cached variant URLs of {@code fileName}. Called whenever a new original is stored under that
+     * name, so its variants are not served from an earlier upload.
+     */
+    void invalidateVariants(String fileName);
+
+    /**
+     * URL of one variant of an uploaded image, rendering it first if it does not exist yet. Completes with
+     * {@code null} when the original cannot be decoded.
+     */
+    CompletableFuture<String> getVariantUrl(String fileName, ImageVariant variant);
+
+}
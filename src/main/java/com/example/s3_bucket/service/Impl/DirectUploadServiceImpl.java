@@ -0,0 +1,182 @@
+package com.example.s3_bucket.service.Impl;
+
+import com.example.s3_bucket.dto.*;
+import com.example.s3_bucket.enums.CommonMessages;
+import com.example.s3_bucket.enums.ImageType;
+import com.example.s3_bucket.enums.StatusType;
+import com.example.s3_bucket.service.DirectUploadService;
+import com.example.s3_bucket.service.S3Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.awscore.presigner.PresignedRequest;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.UploadPartPresignRequest;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Presigned upload flow: clients PUT the file straight into the bucket and only call back once it is there,
+ * so the bytes never pass through this service. Uploads land under
+ * {@code quarantine/direct/<user>/<uuid>/<file>}, which is private and covered by the quarantine lifecycle
+ * rule, and are published under the usual key once they pass moderation.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DirectUploadServiceImpl implements DirectUploadService {
+
+    private static final String STAGING_PREFIX = "quarantine/direct/";
+    private static final int MAX_PARTS = 10_000;
+
+    private final S3Client s3Client;
+    private final S3Presigner s3Presigner;
+    private final S3Service s3Service;
+
+    @Value("${api.class.s3.image.bucket-name}")
+    private String bucketName;
+
+    @Value("${s3.direct.url-ttl-minutes:15}")
+    private long urlTtlMinutes;
+
+    @Value("${s3.direct.max-size:6000MB}")
+    private DataSize maxSize;
+
+    @Value("${s3.transfer.part-size:8MB}")
+    private DataSize partSize;
+
+    @Value("${s3.transfer.multipart-threshold:16MB}")
+    private DataSize multipartThreshold;
+
+    @Override
+    public DirectUploadDto initiate(DirectUploadRequest request, String authUserId) {
+        String fileName = FilenameUtils.getName(request.getFileName());
+        if (fileName == null || fileName.isEmpty()) {
+            throw new IllegalArgumentException("Original filename is missing");
+        }
+        long contentLength = Optional.ofNullable(request.getContentLength()).orElse(0L);
+        if (contentLength <= 0 || contentLength > maxSize.toBytes()) {
+            throw new IllegalArgumentException("Content length must be between 1 byte and " + maxSize);
+        }
+        // Validates the extension before anything is signed
+        s3Service.resolveObjectKey(fileName);
+
+        String key = STAGING_PREFIX + authUserId + "/" + UUID.randomUUID() + "/" + fileName;
+        String contentType = s3Service.resolveContentType(fileName);
+        Map<String, String> metadata = Map.of("Title", "File Upload - " + fileName);
+        Duration ttl = Duration.ofMinutes(urlTtlMinutes);
+
+        if (contentLength < multipartThreshold.toBytes()) {
+            PresignedRequest presigned = s3Presigner.presignPutObject(PutObjectPresignRequest.builder()
+                    .signatureDuration(ttl)
+                    .putObjectRequest(PutObjectRequest.builder()
+                            .bucket(bucketName)
+                            .key(key)
+                            .contentType(contentType)
+                            .contentLength(contentLength)
+                            .metadata(metadata)
+                            .build())
+                    .build());
+            log.info("LOG:: Presigned direct upload of {} to {}", fileName, key);
+            return DirectUploadDto.builder()
+                    .key(key)
+                    .url(presigned.url().toString())
+                    .headers(clientHeaders(presigned))
+                    .expiresAt(presigned.expiration())
+                    .build();
+        }
+
+        // S3 allows at most 10,000 parts, so very large files get proportionally larger parts
+        long size = Math.max(partSize.toBytes(), (contentLength + MAX_PARTS - 1) / MAX_PARTS);
+        int partCount = Math.toIntExact((contentLength + size - 1) / size);
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .metadata(metadata)
+                .build()).uploadId();
+
+        List<DirectUploadDto.PresignedPart> parts = new ArrayList<>(partCount);
+        PresignedRequest lastPresigned = null;
+        for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+            long length = Math.min(size, contentLength - (partNumber - 1) * size);
+            lastPresigned = s3Presigner.presignUploadPart(UploadPartPresignRequest.builder()
+                    .signatureDuration(ttl)
+                    .uploadPartRequest(UploadPartRequest.builder()
+                            .bucket(bucketName)
+                            .key(key)
+                            .uploadId(uploadId)
+                            .partNumber(partNumber)
+                            .contentLength(length)
+                            .build())
+                    .build());
+            parts.add(new DirectUploadDto.PresignedPart(partNumber, lastPresigned.url().toString()));
+        }
+        log.info("LOG:: Presigned direct multipart upload {} of {} to {} ({} parts)", uploadId, fileName, key, partCount);
+        return DirectUploadDto.builder()
+                .key(key)
+                .uploadId(uploadId)
+                .partSize(size)
+                .parts(parts)
+                .headers(clientHeaders(lastPresigned))
+                .expiresAt(lastPresigned.expiration())
+                .build();
+    }
+
+    @Override
+    public CommonResponse complete(DirectUploadCompleteRequest request, String authUserId, String token, ImageType imageType) {
+        String key = request.getKey();
+        // The staging key embeds the owner, so users can only complete their own uploads
+        if (key == null || !key.startsWith(STAGING_PREFIX + authUserId + "/")) {
+            return failure(CommonMessages.FORBIDDEN_ACCESS, 403, "Upload does not belong to this user");
+        }
+        try {
+            if (request.getUploadId() != null) {
+                List<CompletedPart> parts = Optional.ofNullable(request.getParts()).orElse(List.of()).stream()
+                        .sorted(Comparator.comparingInt(DirectUploadCompleteRequest.Part::getPartNumber))
+                        .map(part -> CompletedPart.builder().partNumber(part.getPartNumber()).eTag(part.getEtag()).build())
+                        .toList();
+                s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(request.getUploadId())
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                        .build());
+                log.info("LOG:: Completed direct multipart upload {} for {}", request.getUploadId(), key);
+            }
+            s3Client.headObject(HeadObjectRequest.builder().bucket(bucketName).key(key).build());
+        } catch (NoSuchKeyException | NoSuchUploadException e) {
+            return failure(CommonMessages.RESOURCE_NOT_FOUND, 404, "Uploaded object not found: " + key);
+        }
+        return s3Service.processUploadedObject(key, FilenameUtils.getName(key), authUserId, token, imageType);
+    }
+
+    /**
+     * Signed headers the client has to send with the upload, apart from {@code Host}.
+     */
+    private Map<String, String> clientHeaders(PresignedRequest presigned) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        presigned.signedHeaders().forEach((name, values) -> {
+            if (!HttpHeaders.HOST.equalsIgnoreCase(name) && !values.isEmpty()) {
+                headers.put(name, values.get(0));
+            }
+        });
+        return headers;
+    }
+
+    private CommonResponse failure(CommonMessages message, int statusCode, String description) {
+        return CommonResponse.builder()
+                .data(description)
+                .meta(new MetaData(true, message, statusCode, description))
+                .status(StatusType.STATUS_FAIL)
+                .build();
+    }
+}
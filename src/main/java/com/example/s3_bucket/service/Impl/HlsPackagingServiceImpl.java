@@ -0,0 +1,430 @@
+package com.example.s3_bucket.service.Impl;
+
+import com.example.s3_bucket.dto.VideoProbe;
+import com.example.s3_bucket.service.HlsPackagingService;
+import com.example.s3_bucket.service.S3TransferService;
+import com.example.s3_bucket.service.TranscodeScheduler;
+import com.example.s3_bucket.service.VideoCompressionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Packages videos as an HLS ladder with a single ffmpeg process: the input is decoded once, split in the
+ * filter graph and scaled to every rendition no wider than the source. All renditions share the keyframe
+ * interval, so segments line up across the ladder and players can switch at any segment boundary.
+ * <p>
+ * ffmpeg writes each segment to a {@code .tmp} file and renames it once the segment is closed; a
+ * {@link WatchService} on the rendition directories picks up the renames and the segments are uploaded
+ * while the encode goes on. The playlists follow once ffmpeg has finished, media playlists before the
+ * master, so a client never sees a playlist whose segments are missing.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HlsPackagingServiceImpl implements HlsPackagingService {
+
+    private static final String MASTER_PLAYLIST = "master.m3u8";
+    private static final String MEDIA_PLAYLIST = "index.m3u8";
+    private static final String SEGMENT_SUFFIX = ".ts";
+    private static final String PLAYLIST_CONTENT_TYPE = "application/vnd.apple.mpegurl";
+    private static final String SEGMENT_CONTENT_TYPE = "video/mp2t";
+    private static final int FRAME_RATE = 30;
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private final VideoCompressionService videoCompressionService;
+    private final TranscodeScheduler transcodeScheduler;
+    private final S3TransferService s3TransferService;
+    private final S3Client s3Client;
+    private final MeterRegistry meterRegistry;
+    @Qualifier("uploadStageExecutor")
+    private final Executor uploadStageExecutor;
+    private List<Rendition> ladder;
+    private Timer firstSegment;
+    private Counter segmentsUploaded;
+
+    @Value("${api.class.s3.image.bucket-name}")
+    private String bucketName;
+
+    @Getter
+    @Value("${video.hls.enabled:false}")
+    private boolean enabled;
+
+    @Value("${video.hls.renditions:1080:5000,720:2800,480:1400,360:800}")
+    private List<String> renditions;
+
+    @Value("${video.hls.segment-seconds:4}")
+    private int segmentSeconds;
+
+    @Value("${video.hls.audio-bitrate-kbps:128}")
+    private int audioBitrateKbps;
+
+    @Value("${video.compression.preset:medium}")
+    private String compressionPreset;
+
+    @Value("${video.compression.timeout:300}")
+    private int processTimeoutSeconds;
+
+    @PostConstruct
+    void init() {
+        ladder = renditions.stream()
+                .map(Rendition::parse)
+                .sorted((a, b) -> Integer.compare(b.width(), a.width()))
+                .toList();
+        if (ladder.isEmpty()) {
+            throw new IllegalStateException("video.hls.renditions must list at least one rendition");
+        }
+        firstSegment = Timer.builder("video.hls.first-segment")
+                .description("Time from the start of packaging until the first segment is in the bucket")
+                .register(meterRegistry);
+        segmentsUploaded = Counter.builder("video.hls.segments.uploaded")
+                .description("HLS segments uploaded while their video was still being encoded")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String packageVideo(File inputFile, String keyPrefix, CompletableFuture<?> abort) throws IOException {
+        VideoProbe probe = videoCompressionService.probe(inputFile);
+        if (probe == null) {
+            throw new IOException("Video could not be probed: " + inputFile.getName());
+        }
+        List<Rendition> selected = selectRenditions(probe);
+        boolean audio = probe.getAudioCodec() != null;
+        Path workDir = Files.createTempDirectory("hls_");
+        SegmentUploader uploader = new SegmentUploader(workDir, keyPrefix, System.nanoTime());
+        try {
+            for (Rendition rendition : selected) {
+                Files.createDirectories(workDir.resolve(rendition.name()));
+            }
+            List<String> command = buildCommand(inputFile, workDir, selected, audio);
+            log.info("LOG:: Packaging {} as HLS with renditions {}", inputFile.getName(),
+                    selected.stream().map(Rendition::name).toList());
+            transcodeScheduler.execute(() -> runAndUploadSegments(command, workDir, selected, uploader, abort));
+
+            // Segments the watcher has not reported yet, the last ones are closed when ffmpeg exits
+            uploader.uploadRemaining(selected);
+            uploader.await();
+            for (Rendition rendition : selected) {
+                uploadPlaylist(workDir.resolve(rendition.name()).resolve(MEDIA_PLAYLIST),
+                        keyPrefix + rendition.name() + "/" + MEDIA_PLAYLIST);
+            }
+            String masterKey = keyPrefix + MASTER_PLAYLIST;
+            uploadPlaylist(workDir.resolve(MASTER_PLAYLIST), masterKey);
+            log.info("LOG:: HLS package of {} uploaded as {}", inputFile.getName(), masterKey);
+            return masterKey;
+        } catch (IOException | RuntimeException e) {
+            uploader.awaitQuietly();
+            deletePackage(keyPrefix);
+            throw e;
+        } finally {
+            FileSystemUtils.deleteRecursively(workDir);
+        }
+    }
+
+    /**
+     * Runs ffmpeg and uploads every segment the watcher sees being closed until the process exits.
+     */
+    private void runAndUploadSegments(List<String> command, Path workDir, List<Rendition> selected,
+                                      SegmentUploader uploader, CompletableFuture<?> abort) throws IOException {
+        // The slot may have been waited for longer than the video was wanted
+        if (abort.isDone()) {
+            throw new IOException("HLS packaging was aborted");
+        }
+        Process process = null;
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            for (Rendition rendition : selected) {
+                workDir.resolve(rendition.name()).register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+            }
+            File logFile = workDir.resolve("ffmpeg.log").toFile();
+            process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(logFile)
+                    .start();
+            Process started = process;
+            abort.whenComplete((ignored, error) -> started.destroyForcibly());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(processTimeoutSeconds);
+            while (process.isAlive()) {
+                if (System.nanoTime() - deadline > 0) {
+                    throw new IOException("HLS packaging timed out after " + processTimeoutSeconds + " seconds");
+                }
+                WatchKey key = watcher.poll(200, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    continue;
+                }
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // An overflow only loses events, the segments themselves are picked up after the encode
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        uploader.upload(directory.resolve((Path) event.context()));
+                    }
+                }
+                key.reset();
+            }
+            if (abort.isDone()) {
+                throw new IOException("HLS packaging was aborted");
+            }
+            if (process.exitValue() != 0) {
+                throw new IOException("HLS packaging failed with exit code " + process.exitValue() + ": "
+                        + tail(logFile));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("HLS packaging was interrupted", e);
+        } catch (ClosedWatchServiceException e) {
+            throw new IOException("HLS segment watcher was closed", e);
+        } finally {
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Renditions no wider than the source. A source narrower than the whole ladder still gets the smallest
+     * rendition.
+     */
+    private List<Rendition> selectRenditions(VideoProbe probe) {
+        List<Rendition> selected = ladder.stream()
+                .filter(rendition -> rendition.width() <= probe.getDisplayWidth())
+                .toList();
+        return selected.isEmpty() ? List.of(ladder.get(ladder.size() - 1)) : selected;
+    }
+
+    private List<String> buildCommand(File inputFile, Path workDir, List<Rendition> selected, boolean audio) {
+        // One decode, split into a scaled branch per rendition
+        StringBuilder filter = new StringBuilder("[0:v]fps=").append(FRAME_RATE)
+                .append(",split=").append(selected.size());
+        for (int i = 0; i < selected.size(); i++) {
+            filter.append("[s").append(i).append("]");
+        }
+        for (int i = 0; i < selected.size(); i++) {
+            filter.append(";[s").append(i).append("]scale=").append(selected.get(i).width())
+                    .append(":-2[v").append(i).append("]");
+        }
+
+        int gop = FRAME_RATE * segmentSeconds;
+        List<String> command = new ArrayList<>(Arrays.asList(
+                "ffmpeg",
+                "-y",
+                "-v", "error",
+                "-i", inputFile.getAbsolutePath(),
+                "-filter_complex", filter.toString()
+        ));
+        List<String> streamMap = new ArrayList<>();
+        for (int i = 0; i < selected.size(); i++) {
+            command.addAll(List.of("-map", "[v" + i + "]"));
+            if (audio) {
+                command.addAll(List.of("-map", "0:a:0"));
+            }
+            streamMap.add("v:" + i + (audio ? ",a:" + i : "") + ",name:" + selected.get(i).name());
+        }
+        command.addAll(Arrays.asList(
+                "-c:v", "libx264",
+                "-preset", compressionPreset,
+                "-pix_fmt", "yuv420p",
+                // Same closed GOP in every rendition, so segment boundaries line up across the ladder
+                "-g", String.valueOf(gop),
+                "-keyint_min", String.valueOf(gop),
+                "-sc_threshold", "0",
+                "-threads", String.valueOf(transcodeScheduler.getThreadsPerEncode())
+        ));
+        for (int i = 0; i < selected.size(); i++) {
+            int bitrate = selected.get(i).bitrateKbps();
+            command.addAll(Arrays.asList(
+                    "-b:v:" + i, bitrate + "k",
+                    "-maxrate:v:" + i, (bitrate * 107 / 100) + "k",
+                    "-bufsize:v:" + i, (bitrate * 3 / 2) + "k"
+            ));
+        }
+        if (audio) {
+            command.addAll(Arrays.asList("-c:a", "aac", "-b:a", audioBitrateKbps + "k", "-ac", "2"));
+        }
+        command.addAll(Arrays.asList(
+                "-f", "hls",
+                "-hls_time", String.valueOf(segmentSeconds),
+                "-hls_playlist_type", "vod",
+                // temp_file: segments only get their final name once they are closed
+                "-hls_flags", "independent_segments+temp_file",
+                "-hls_segment_filename", workDir.resolve("%v").resolve("segment_%05d" + SEGMENT_SUFFIX).toString(),
+                "-master_pl_name", MASTER_PLAYLIST,
+                "-var_stream_map", String.join(" ", streamMap),
+                workDir.resolve("%v").resolve(MEDIA_PLAYLIST).toString()
+        ));
+        return command;
+    }
+
+    private void uploadPlaylist(Path playlist, String key) throws IOException {
+        if (!Files.exists(playlist)) {
+            throw new IOException("ffmpeg did not write playlist " + playlist.getFileName());
+        }
+        s3TransferService.uploadFile(playlist.toFile(), key, PLAYLIST_CONTENT_TYPE, metadata(key));
+    }
+
+    @Override
+    public void deletePackage(String keyPrefix) {
+        try {
+            List<ObjectIdentifier> keys = new ArrayList<>();
+            s3Client.listObjectsV2Paginator(ListObjectsV2Request.builder()
+                            .bucket(bucketName)
+                            .prefix(keyPrefix)
+                            .build())
+                    .contents()
+                    .forEach(object -> keys.add(ObjectIdentifier.builder().key(object.key()).build()));
+            for (int from = 0; from < keys.size(); from += DELETE_BATCH_SIZE) {
+                s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                        .bucket(bucketName)
+                        .delete(Delete.builder()
+                                .objects(keys.subList(from, Math.min(keys.size(), from + DELETE_BATCH_SIZE)))
+                                .quiet(true)
+                                .build())
+                        .build());
+            }
+            log.info("LOG:: Deleted {} objects of HLS package {}", keys.size(), keyPrefix);
+        } catch (Exception e) {
+            log.warn("Could not delete HLS package {}", keyPrefix, e);
+        }
+    }
+
+    private static Map<String, String> metadata(String key) {
+        return Map.of("Title", "File Upload - " + key.substring(key.lastIndexOf('/') + 1));
+    }
+
+    private static String tail(File logFile) {
+        try {
+            String output = Files.readString(logFile.toPath()).strip();
+            return output.length() > 500 ? output.substring(output.length() - 500) : output;
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Uploads closed segments in the background; each one is uploaded once, whether the watcher or the final
+     * sweep finds it first.
+     */
+    private class SegmentUploader {
+        private final Path workDir;
+        private final String keyPrefix;
+        private final long startNanos;
+        private final Set<Path> started = ConcurrentHashMap.newKeySet();
+        private final List<CompletableFuture<Void>> uploads = new ArrayList<>();
+
+        SegmentUploader(Path workDir, String keyPrefix, long startNanos) {
+            this.workDir = workDir;
+            this.keyPrefix = keyPrefix;
+            this.startNanos = startNanos;
+        }
+
+        void upload(Path segment) {
+            if (!segment.getFileName().toString().endsWith(SEGMENT_SUFFIX) || !started.add(segment)) {
+                return;
+            }
+            String key = keyPrefix + workDir.relativize(segment).toString().replace(File.separatorChar, '/');
+            boolean first = started.size() == 1;
+            Runnable task = () -> {
+                try {
+                    s3TransferService.uploadFile(segment.toFile(), key, SEGMENT_CONTENT_TYPE, metadata(key));
+                    // Uploaded segments are not needed locally any more, which keeps long videos off the disk
+                    Files.deleteIfExists(segment);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                segmentsUploaded.increment();
+                if (first) {
+                    firstSegment.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                }
+            };
+            try {
+                uploads.add(CompletableFuture.runAsync(task, uploadStageExecutor));
+            } catch (TaskRejectedException e) {
+                // The stage pool is full, the segment is uploaded on this thread instead, which also slows
+                // down the watcher until the pool has caught up
+                try {
+                    task.run();
+                    uploads.add(CompletableFuture.completedFuture(null));
+                } catch (RuntimeException error) {
+                    uploads.add(CompletableFuture.failedFuture(error));
+                }
+            }
+        }
+
+        void uploadRemaining(List<Rendition> selected) throws IOException {
+            for (Rendition rendition : selected) {
+                try (Stream<Path> files = Files.list(workDir.resolve(rendition.name()))) {
+                    files.sorted().forEach(this::upload);
+                }
+            }
+        }
+
+        void await() throws IOException {
+            try {
+                CompletableFuture.allOf(uploads.toArray(CompletableFuture[]::new)).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() instanceof UncheckedIOException unchecked ? unchecked.getCause() : e.getCause();
+                throw new IOException("HLS segment upload failed", cause);
+            }
+        }
+
+        void awaitQuietly() {
+            CompletableFuture.allOf(uploads.toArray(CompletableFuture[]::new))
+                    .exceptionally(error -> null)
+                    .join();
+        }
+    }
+
+    /**
+     * One rung of the ladder, configured as {@code width:bitrateKbps}.
+     */
+    private record Rendition(int width, int bitrateKbps) {
+
+        static Rendition parse(String value) {
+            String[] parts = value.trim().split(":");
+            try {
+                return new Rendition(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Invalid HLS rendition '" + value + "', expected width:bitrateKbps", e);
+            }
+        }
+
+        String name() {
+            return width + "w";
+        }
+    }
+}
@@ -2,25 +2,57 @@ package com.example.s3_bucket.service.Impl;
 
 import com.example.s3_bucket.dto.ImageProcessingRequest;
 import com.example.s3_bucket.dto.ImageProcessingResponseDTO;
+import com.example.s3_bucket.exceptions.ExternalServiceException;
 import com.example.s3_bucket.service.ImageProcessingService;
+import com.example.s3_bucket.util.CircuitBreaker;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
-import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpServerErrorException;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
 
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Client of the image-processing Lambda. Calls go through the shared service connection pool and are guarded
+ * by a bulkhead ({@code max-concurrent}), a circuit breaker and an overall deadline. When an attempt has not
+ * answered within the observed p95 latency a second, hedged attempt is sent and the first answer wins; the
+ * Lambda writes the same keys for the same image, so a duplicate call is harmless. A hedge needs a bulkhead
+ * permit of its own and is skipped when none is free, so at most {@code max-concurrent} attempts are in flight. Whenever the Lambda is
+ * not used (open circuit, full bulkhead, failure) the error response makes the caller fall back to the
+ * original CloudFront URL right away.
+ */
 @Slf4j
 @Service
 public class ImageProcessingServiceImpl implements ImageProcessingService {
 
-    private final RestTemplate restTemplate;
+    private static final String METRIC_PREFIX = "image.processing.lambda";
+
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private Timer latency;
+    private Counter hedges;
+    private Counter hedgesSkipped;
+    private Semaphore bulkhead;
+    private CircuitBreaker circuitBreaker;
 
     @Value("${api.class.s3.image.bucket-name}")
     private String bucketName;
@@ -28,67 +60,195 @@ public class ImageProcessingServiceImpl implements ImageProcessingService {
     @Value("${cloud-front.url}")
     private String cloudFrontUrl;
 
-    @Value("${aws.image.processing.url}")
-    private String imageProcessingUrl;
-
     @Value("${aws.image.processing.uri}")
     private String imageProcessingUri;
 
     @Value("${aws.image.processing.auth-token}")
     private String authToken;
 
-    // Constructor for production use with default RestTemplate
-    public ImageProcessingServiceImpl() {
-        this.restTemplate = new RestTemplate();
-        // Add String converter first to handle text/plain responses
-        this.restTemplate.getMessageConverters().add(0, new StringHttpMessageConverter(StandardCharsets.UTF_8));
-    }
+    @Value("${aws.image.processing.timeout-ms:15000}")
+    private long timeoutMs;
 
-    // Constructor for testing with RestTemplate mock
-    public ImageProcessingServiceImpl(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
-    }
+    @Value("${aws.image.processing.max-concurrent:32}")
+    private int maxConcurrent;
 
-    @Override
-    public ImageProcessingResponseDTO processImage(String imageKey) {
-        try {
-            String url = imageProcessingUrl + imageProcessingUri;
-            ImageProcessingRequest request = new ImageProcessingRequest(imageKey, bucketName, cloudFrontUrl);
+    @Value("${aws.image.processing.bulkhead-wait-ms:100}")
+    private long bulkheadWaitMs;
+
+    @Value("${aws.image.processing.hedge.enabled:true}")
+    private boolean hedgeEnabled;
 
-//            String response = restTemplate.postForObject(url, request, String.class);
+    @Value("${aws.image.processing.hedge.initial-delay-ms:3000}")
+    private long hedgeInitialDelayMs;
 
-            // Create headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(authToken);
+    @Value("${aws.image.processing.hedge.min-delay-ms:250}")
+    private long hedgeMinDelayMs;
 
-            // Create an HTTP entity with headers and body
-            HttpEntity<ImageProcessingRequest> entity = new HttpEntity<>(request, headers);
+    @Value("${aws.image.processing.hedge.min-samples:20}")
+    private long hedgeMinSamples;
 
-            // Execute request with headers
-            ResponseEntity<String> responseEntity = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    String.class);
+    @Value("${aws.image.processing.circuit.window-size:20}")
+    private int circuitWindowSize;
 
-            String response = responseEntity.getBody();
+    @Value("${aws.image.processing.circuit.minimum-calls:10}")
+    private int circuitMinimumCalls;
 
-            // Then parse it to your DTO
-            ObjectMapper objectMapper = new ObjectMapper();
-            return objectMapper.readValue(response, ImageProcessingResponseDTO.class);
-        } catch (HttpClientErrorException | HttpServerErrorException e) {
-            log.error("Image processing service error: Status={}, Body={}",
-                    e.getStatusCode(), e.getResponseBodyAsString());
+    @Value("${aws.image.processing.circuit.failure-rate:0.5}")
+    private double circuitFailureRate;
 
-            // Return default response to continue processing
+    @Value("${aws.image.processing.circuit.open-seconds:30}")
+    private long circuitOpenSeconds;
+
+    public ImageProcessingServiceImpl(@Qualifier("imageProcessingWebClient") WebClient webClient,
+                                      ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.webClient = webClient;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        bulkhead = new Semaphore(maxConcurrent);
+        circuitBreaker = new CircuitBreaker("image-processing", circuitWindowSize, circuitMinimumCalls,
+                circuitFailureRate, Duration.ofSeconds(circuitOpenSeconds));
+        latency = Timer.builder(METRIC_PREFIX + ".latency")
+                .description("Latency of successful Lambda attempts, its p95 is the hedging delay")
+                .publishPercentiles(0.95)
+                .register(meterRegistry);
+        hedges = Counter.builder(METRIC_PREFIX + ".hedges")
+                .description("Hedged attempts sent after the first one was slower than the p95")
+                .register(meterRegistry);
+        hedgesSkipped = Counter.builder(METRIC_PREFIX + ".hedges.skipped")
+                .description("Hedged attempts not sent because the bulkhead was full")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .description("Lambda calls that can still be started")
+                .register(meterRegistry);
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder(METRIC_PREFIX + ".circuit.state", circuitBreaker, breaker -> breaker.getState() == state ? 1 : 0)
+                    .description("1 for the current state of the Lambda circuit breaker")
+                    .tag("state", state.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public ImageProcessingResponseDTO processImage(String imageKey) {
+        // Checked before the bulkhead so an open circuit never waits for a slot
+        if (circuitBreaker.isOpen()) {
+            count("short_circuited");
+            return createFallbackResponse();
+        }
+        boolean permitted = false;
+        try {
+            permitted = bulkhead.tryAcquire(bulkheadWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!permitted) {
+            count("rejected");
             return createFallbackResponse();
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            bulkhead.release();
+            count("short_circuited");
+            return createFallbackResponse();
+        }
+
+        try {
+            ImageProcessingRequest request = new ImageProcessingRequest(imageKey, bucketName, cloudFrontUrl);
+            String response = hedged(request)
+                    .timeout(Duration.ofMillis(timeoutMs))
+                    .block();
+            ImageProcessingResponseDTO result = objectMapper.readValue(response, ImageProcessingResponseDTO.class);
+            circuitBreaker.onSuccess();
+            count("success");
+            return result;
         } catch (JsonProcessingException e) {
             log.error("Failed to parse response: {}", e.getMessage());
-
-            // Return default response to continue processing
+            circuitBreaker.onFailure();
+            count("failure");
+            return createFallbackResponse();
+        } catch (RuntimeException e) {
+            boolean timedOut = Exceptions.unwrap(e) instanceof TimeoutException;
+            log.error("Image processing service {} for {}: {}", timedOut ? "timed out" : "error", imageKey, e.getMessage());
+            circuitBreaker.onFailure();
+            count(timedOut ? "timeout" : "failure");
             return createFallbackResponse();
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Sends the request and, if no answer has arrived after the hedging delay, a second one. The first answer
+     * is used and the other attempt is cancelled; a failed attempt only waits for one that is still running,
+     * so a failing Lambda is not waited on for the hedging delay.
+     */
+    private Mono<String> hedged(ImageProcessingRequest request) {
+        if (!hedgeEnabled) {
+            return attempt(request);
         }
+        AtomicInteger running = new AtomicInteger(1);
+        Mono<String> primary = attempt(request)
+                .onErrorResume(error -> lastOrNever(running, error));
+        Mono<String> hedge = Mono.delay(hedgeDelay())
+                .then(Mono.defer(() -> {
+                    // Under load the primary keeps going alone rather than waiting for a permit
+                    if (!bulkhead.tryAcquire()) {
+                        hedgesSkipped.increment();
+                        return Mono.<String>never();
+                    }
+                    running.incrementAndGet();
+                    hedges.increment();
+                    return attempt(request)
+                            .doFinally(signal -> bulkhead.release())
+                            .onErrorResume(error -> lastOrNever(running, error));
+                }));
+        return Mono.firstWithSignal(primary, hedge);
+    }
+
+    private static Mono<String> lastOrNever(AtomicInteger running, Throwable error) {
+        return running.decrementAndGet() == 0 ? Mono.error(error) : Mono.never();
+    }
+
+    private Mono<String> attempt(ImageProcessingRequest request) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return webClient.post()
+                    .uri(imageProcessingUri)
+                    .headers(headers -> headers.setBearerAuth(authToken))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(request)
+                    .retrieve()
+                    .onStatus(HttpStatusCode::isError, response -> response.bodyToMono(String.class)
+                            .defaultIfEmpty("")
+                            .map(body -> new ExternalServiceException(
+                                    "Image processing service returned " + response.statusCode() + ": " + body)))
+                    // The Lambda answers JSON as text/plain, so the body is read as a string and parsed here
+                    .bodyToMono(String.class)
+                    .doOnNext(body -> latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    /**
+     * The p95 of recent successful attempts, or the configured initial delay until enough have been seen.
+     */
+    private Duration hedgeDelay() {
+        if (latency.count() < hedgeMinSamples) {
+            return Duration.ofMillis(hedgeInitialDelayMs);
+        }
+        for (ValueAtPercentile percentile : latency.takeSnapshot().percentileValues()) {
+            if (percentile.percentile() == 0.95) {
+                long p95 = (long) percentile.value(TimeUnit.MILLISECONDS);
+                return Duration.ofMillis(Math.max(hedgeMinDelayMs, p95));
+            }
+        }
+        return Duration.ofMillis(hedgeInitialDelayMs);
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter(METRIC_PREFIX + ".calls", "outcome", outcome).increment();
     }
 
     private ImageProcessingResponseDTO createFallbackResponse() {
@@ -98,4 +258,4 @@ public class ImageProcessingServiceImpl implements ImageProcessingService {
 
         return fallbackResponse;
     }
-}
\ No newline at end of file
+}
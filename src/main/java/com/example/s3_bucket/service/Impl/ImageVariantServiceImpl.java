@@ -0,0 +1,396 @@
+package com.example.s3_bucket.service.Impl;
+
+import com.example.s3_bucket.dto.ImageProcessingResponseDTO;
+import com.example.s3_bucket.enums.ImageVariant;
+import com.example.s3_bucket.service.ImageVariantService;
+import com.example.s3_bucket.service.S3TransferService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * In-process replacement for the image-processing Lambda. The image is decoded once, with source subsampling
+ * down to the smallest size every requested variant can still be rendered from, and each variant is cropped,
+ * scaled and JPEG-encoded on the {@code imageVariantExecutor} pool. Variants are uploaded in parallel as soon as
+ * they are encoded, under {@code images/variants/<filename>_<variant>.jpg}. The original's extension stays in the
+ * key, so {@code a.png} and {@code a.jpg} never share variants.
+ * <p>
+ * Variants that are not rendered with the upload are produced later, either by the single low-priority
+ * {@code imageVariantBackgroundExecutor} queue or on their first request. URLs of rendered variants are cached,
+ * and concurrent requests for a missing variant share one render. A new original under the same name drops the
+ * cached URLs, and a variant object older than its original is rendered again.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImageVariantServiceImpl implements ImageVariantService {
+
+    private static final String ORIGINAL_PREFIX = "images/";
+    private static final String VARIANT_PREFIX = "images/variants/";
+    private static final String VARIANT_CONTENT_TYPE = "image/jpeg";
+    private static final String TRIGGER_UPLOAD = "upload";
+    private static final String TRIGGER_BACKGROUND = "background";
+    private static final String TRIGGER_ON_DEMAND = "on-demand";
+
+    private final S3AsyncClient s3AsyncClient;
+    private final S3TransferService s3TransferService;
+    private final MeterRegistry meterRegistry;
+    @Qualifier("imageVariantExecutor")
+    private final Executor imageVariantExecutor;
+    @Qualifier("imageVariantBackgroundExecutor")
+    private final Executor imageVariantBackgroundExecutor;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private Cache<String, String> variantUrls;
+
+    @Value("${api.class.s3.image.bucket-name}")
+    private String bucketName;
+
+    @Value("${cloud-front.url}")
+    private String cloudFrontUrl;
+
+    @Value("${image.variants.quality:0.85}")
+    private float quality;
+
+    @Value("${image.variants.cache.max-size:100000}")
+    private long cacheMaxSize;
+
+    @PostConstruct
+    void initCache() {
+        variantUrls = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, variantUrls, "image.variants");
+    }
+
+    @Override
+    public CompletableFuture<ImageProcessingResponseDTO.Urls> generateVariants(byte[] image, String fileName) {
+        return generateVariants(image, fileName, EnumSet.allOf(ImageVariant.class));
+    }
+
+    @Override
+    public CompletableFuture<ImageProcessingResponseDTO.Urls> generateVariants(byte[] image, String fileName,
+                                                                               Set<ImageVariant> variants) {
+        long start = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> decode(image, variants), imageVariantExecutor)
+                .thenCompose(source -> source == null
+                        ? CompletableFuture.completedFuture(null)
+                        : renderAndUpload(source, fileName, variants, imageVariantExecutor, TRIGGER_UPLOAD))
+                .whenComplete((urls, error) -> {
+                    if (error != null) {
+                        log.error("Variant generation failed for {}", fileName, error);
+                    } else if (urls != null) {
+                        log.info("LOG:: Generated {} variants for {} in {} ms", variants.size(), fileName,
+                                (System.nanoTime() - start) / 1_000_000);
+                    }
+                });
+    }
+
+    @Override
+    public CompletableFuture<ImageProcessingResponseDTO.Urls> generateVariants(String s3Key, String fileName,
+                                                                               Set<ImageVariant> variants) {
+        return download(s3Key).thenCompose(image -> generateVariants(image, fileName, variants));
+    }
+
+    @Override
+    public void scheduleVariants(String s3Key, String fileName, Set<ImageVariant> variants) {
+        if (variants.isEmpty()) {
+            return;
+        }
+        try {
+            imageVariantBackgroundExecutor.execute(() -> renderInBackground(s3Key, fileName, variants));
+        } catch (RejectedExecutionException e) {
+            // Nothing is lost, the variants are rendered when they are first requested
+            log.debug("Background variant queue is full, leaving {} to on-demand rendering", fileName);
+            meterRegistry.counter("image.variants.background.rejected").increment();
+        }
+    }
+
+    @Override
+    public void invalidateVariants(String fileName) {
+        for (ImageVariant variant : ImageVariant.values()) {
+            variantUrls.invalidate(variantKey(fileName, variant));
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> getVariantUrl(String fileName, ImageVariant variant) {
+        String key = variantKey(fileName, variant);
+        String cached = variantUrls.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<String> lookup = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, lookup);
+        if (existing != null) {
+            return existing;
+        }
+        // The cache does not survive restarts, so the bucket is asked before anything is rendered
+        s3AsyncClient.headObject(HeadObjectRequest.builder().bucket(bucketName).key(key).build())
+                .handle((head, error) -> {
+                    if (error == null) {
+                        return isCurrent(head, fileName).thenCompose(current -> {
+                            if (!current) {
+                                return renderOnDemand(fileName, variant);
+                            }
+                            String url = variantUrl(key);
+                            variantUrls.put(key, url);
+                            return CompletableFuture.completedFuture(url);
+                        });
+                    }
+                    return isNotFound(error)
+                            ? renderOnDemand(fileName, variant)
+                            : CompletableFuture.<String>failedFuture(error);
+                })
+                .thenCompose(Function.identity())
+                .whenComplete((url, error) -> {
+                    inFlight.remove(key, lookup);
+                    if (error != null) {
+                        lookup.completeExceptionally(error);
+                    } else {
+                        lookup.complete(url);
+                    }
+                });
+        return lookup;
+    }
+
+    /**
+     * A variant left over from an earlier original with the same name is older than the current original. When
+     * the original cannot be checked the variant is assumed to be current.
+     */
+    private CompletableFuture<Boolean> isCurrent(HeadObjectResponse variantHead, String fileName) {
+        HeadObjectRequest request = HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(ORIGINAL_PREFIX + fileName)
+                .build();
+        return s3AsyncClient.headObject(request)
+                .handle((original, error) -> error != null
+                        || !variantHead.lastModified().isBefore(original.lastModified()));
+    }
+
+    private CompletableFuture<String> renderOnDemand(String fileName, ImageVariant variant) {
+        Set<ImageVariant> variants = EnumSet.of(variant);
+        return download(ORIGINAL_PREFIX + fileName)
+                .thenApplyAsync(image -> decode(image, variants), imageVariantExecutor)
+                .thenCompose(source -> source == null
+                        ? CompletableFuture.completedFuture(null)
+                        : renderAndUpload(source, fileName, variants, imageVariantExecutor, TRIGGER_ON_DEMAND)
+                                .thenApply(urls -> variant.getUrlGetter().apply(urls)));
+    }
+
+    /**
+     * Runs on the background queue and renders on its thread, so queued work never competes with the
+     * variants an upload is waiting for. Every requested variant is rendered, since variants that already
+     * exist under this name may belong to an earlier original.
+     */
+    private void renderInBackground(String s3Key, String fileName, Set<ImageVariant> variants) {
+        try {
+            BufferedImage source = decode(download(s3Key).join(), variants);
+            if (source != null) {
+                renderAndUpload(source, fileName, variants, Runnable::run, TRIGGER_BACKGROUND).join();
+            }
+        } catch (Exception e) {
+            log.warn("Background variant generation failed for {}, leaving it to on-demand rendering", fileName, e);
+        }
+    }
+
+    private CompletableFuture<ImageProcessingResponseDTO.Urls> renderAndUpload(BufferedImage source, String fileName,
+                                                                               Set<ImageVariant> variants,
+                                                                               Executor executor, String trigger) {
+        ImageProcessingResponseDTO.Urls urls = new ImageProcessingResponseDTO.Urls();
+        Counter rendered = meterRegistry.counter("image.variants.rendered", "trigger", trigger);
+        CompletableFuture<?>[] uploads = variants.stream()
+                .map(variant -> {
+                    String key = variantKey(fileName, variant);
+                    return CompletableFuture.supplyAsync(() -> encode(render(source, variant)), executor)
+                            .thenCompose(bytes -> s3TransferService.uploadBytes(bytes, key, VARIANT_CONTENT_TYPE,
+                                    Map.of("Title", "File Upload - " + FilenameUtils.getName(key)), true))
+                            .thenAccept(result -> {
+                                String url = variantUrl(key);
+                                variantUrls.put(key, url);
+                                rendered.increment();
+                                variant.getUrlSetter().accept(urls, url);
+                            });
+                })
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(uploads).thenApply(done -> urls);
+    }
+
+    private CompletableFuture<byte[]> download(String s3Key) {
+        return s3AsyncClient.getObject(GetObjectRequest.builder().bucket(bucketName).key(s3Key).build(),
+                        AsyncResponseTransformer.toBytes())
+                .thenApply(ResponseBytes::asByteArrayUnsafe);
+    }
+
+    private String variantKey(String fileName, ImageVariant variant) {
+        return VARIANT_PREFIX + FilenameUtils.getName(fileName) + "_" + variant.getField() + ".jpg";
+    }
+
+    private String variantUrl(String key) {
+        return "https://" + cloudFrontUrl + "/" + key;
+    }
+
+    private static boolean isNotFound(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof S3Exception s3Exception && s3Exception.statusCode() == 404;
+    }
+
+    /**
+     * Decodes the image, skipping source pixels that no variant needs. Returns {@code null} for formats
+     * ImageIO cannot read.
+     */
+    private BufferedImage decode(byte[] image, Set<ImageVariant> variants) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(image))) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = subsampling(width, height, variants);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Largest subsampling factor that still leaves every requested variant's crop at least as large as its
+     * target size.
+     */
+    private int subsampling(int width, int height, Set<ImageVariant> variants) {
+        double factor = Double.MAX_VALUE;
+        for (ImageVariant variant : variants) {
+            double aspect = (double) variant.getWidth() / variant.getHeight();
+            double regionWidth = variant.isCrop() ? Math.min(width, height * aspect) : width;
+            double regionHeight = variant.isCrop() ? Math.min(height, width / aspect) : height;
+            double fit = variant.isCrop()
+                    ? regionWidth / variant.getWidth()
+                    : Math.max(regionWidth / variant.getWidth(), regionHeight / variant.getHeight());
+            factor = Math.min(factor, fit);
+        }
+        return Math.max(1, (int) factor);
+    }
+
+    private BufferedImage render(BufferedImage source, ImageVariant variant) {
+        int x = 0;
+        int y = 0;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (variant.isCrop()) {
+            double aspect = (double) variant.getWidth() / variant.getHeight();
+            if ((double) width / height > aspect) {
+                int cropWidth = Math.max(1, (int) Math.round(height * aspect));
+                x = (width - cropWidth) / 2;
+                width = cropWidth;
+            } else {
+                int cropHeight = Math.max(1, (int) Math.round(width / aspect));
+                y = (height - cropHeight) / 2;
+                height = cropHeight;
+            }
+        }
+        // Variants are never upscaled, small originals keep their size
+        double scale = Math.min(1.0, Math.min((double) variant.getWidth() / width, (double) variant.getHeight() / height));
+        // Crops that are scaled down land exactly on the target size, rounding the crop would be off by a pixel
+        boolean exact = variant.isCrop() && scale < 1.0;
+        int targetWidth = exact ? variant.getWidth() : Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = exact ? variant.getHeight() : Math.max(1, (int) Math.round(height * scale));
+        return scale(source.getSubimage(x, y, width, height), targetWidth, targetHeight);
+    }
+
+    /**
+     * Halves the image until it is within a factor of two of the target, which keeps bilinear scaling from
+     * aliasing on large reductions. The result is always opaque RGB, transparent areas become white.
+     */
+    private BufferedImage scale(BufferedImage image, int targetWidth, int targetHeight) {
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = width / 2 > targetWidth ? width / 2 : targetWidth;
+            height = height / 2 > targetHeight ? height / 2 : targetHeight;
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.setBackground(Color.WHITE);
+                graphics.clearRect(0, 0, width, height);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private byte[] encode(BufferedImage image) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(buffer)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writer.dispose();
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,342 @@
+package com.example.s3_bucket.service.Impl;
+
+import com.example.s3_bucket.dto.VideoProbe;
+import com.example.s3_bucket.enums.ImageType;
+import com.example.s3_bucket.enums.VideoModerationMode;
+import com.example.s3_bucket.service.KeyframeModerationService;
+import com.example.s3_bucket.service.VideoCompressionService;
+import com.example.s3_bucket.util.ModerationLabels;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.model.DetectModerationLabelsRequest;
+import software.amazon.awssdk.services.rekognition.model.Image;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Moderates videos from a sample of their frames instead of a Rekognition video job. ffmpeg decodes the
+ * original upload next to the compression pass and writes the sampled frames as JPEGs to a pipe; every frame
+ * is sent to {@code DetectModerationLabels} as soon as it arrives, a few at a time. The first inappropriate
+ * frame settles the verdict and stops the decode, and so does cancelling the returned future.
+ * <p>
+ * Frames are sampled uniformly from the keyframes only, which ffmpeg decodes without the frames in between,
+ * or, with a {@code scene-threshold}, at scene changes of the fully decoded video that are at least one
+ * sample interval apart, so the samples cover the whole video rather than its first cuts. The decode runs
+ * outside the transcode slots and is held to {@code threads} threads. The strategy and the number of frames
+ * can be set per {@link ImageType}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KeyframeModerationServiceImpl implements KeyframeModerationService {
+
+    private static final int SOI = 0xD8;
+    private static final int EOI = 0xD9;
+    private static final int SOS = 0xDA;
+
+    private final RekognitionClient rekognitionClient;
+    private final VideoCompressionService videoCompressionService;
+    private final MeterRegistry meterRegistry;
+    @Qualifier("uploadStageExecutor")
+    private final Executor uploadStageExecutor;
+    private final Map<ImageType, VideoModerationMode> modes = new EnumMap<>(ImageType.class);
+    private final Map<ImageType, Integer> frameCounts = new EnumMap<>(ImageType.class);
+    private Counter moderatedFrames;
+
+    @Value("${rekognition.minimum.confidence}")
+    private Float minConfidence;
+
+    @Value("${rekognition.video.mode:VIDEO_JOB}")
+    private VideoModerationMode defaultMode;
+
+    // Per image type overrides, e.g. {POST: 'KEYFRAMES'}
+    @Value("#{${rekognition.video.modes:{:}}}")
+    private Map<String, Object> modesByType;
+
+    @Value("${rekognition.video.keyframes.frames:8}")
+    private int defaultFrames;
+
+    // Per image type overrides, e.g. {PROFILE_IMAGE: 4}
+    @Value("#{${rekognition.video.keyframes.frames-by-type:{:}}}")
+    private Map<String, Object> framesByType;
+
+    @Value("${rekognition.video.keyframes.scene-threshold:0}")
+    private double sceneThreshold;
+
+    @Value("${rekognition.video.keyframes.width:640}")
+    private int frameWidth;
+
+    @Value("${rekognition.video.keyframes.threads:1}")
+    private int threads;
+
+    @Value("${rekognition.video.keyframes.concurrency:4}")
+    private int concurrency;
+
+    @Value("${rekognition.video.keyframes.timeout-seconds:120}")
+    private long timeoutSeconds;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @PostConstruct
+    void init() {
+        modesByType.forEach((type, mode) -> modes.put(ImageType.valueOf(type),
+                VideoModerationMode.valueOf(String.valueOf(mode).toUpperCase(Locale.ROOT))));
+        framesByType.forEach((type, frames) -> frameCounts.put(ImageType.valueOf(type),
+                Integer.parseInt(String.valueOf(frames))));
+        moderatedFrames = Counter.builder("video.moderation.keyframes.frames")
+                .description("Sampled video frames sent to Rekognition")
+                .register(meterRegistry);
+        log.info("LOG:: Video moderation defaults to {}, overrides {}", defaultMode, modes);
+    }
+
+    @Override
+    public VideoModerationMode getMode(ImageType imageType) {
+        return imageType == null ? defaultMode : modes.getOrDefault(imageType, defaultMode);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> moderate(File videoFile, ImageType imageType) {
+        int frames = imageType == null ? defaultFrames : frameCounts.getOrDefault(imageType, defaultFrames);
+        CompletableFuture<Boolean> verdict = new CompletableFuture<>();
+        long start = System.nanoTime();
+        // The reader blocks on the pipe for as long as the decode runs, so it gets its own thread rather than
+        // one of the stage workers that moderate the frames
+        Thread.Builder readerThreads = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform();
+        readerThreads.name("keyframe-moderation").start(() -> {
+            try {
+                sampleAndModerate(videoFile, frames, verdict);
+            } catch (Exception e) {
+                verdict.completeExceptionally(e);
+            }
+        });
+        verdict.whenComplete((inappropriate, error) -> Timer.builder("video.moderation.keyframes")
+                .description("Time until the keyframe moderation verdict")
+                .tag("verdict", error instanceof CancellationException ? "cancelled"
+                        : error != null ? "error" : inappropriate ? "inappropriate" : "appropriate")
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        // Returned as it is, a dependent stage would not pass a cancel on to the decode
+        return verdict;
+    }
+
+    private void sampleAndModerate(File videoFile, int frames, CompletableFuture<Boolean> verdict) throws IOException {
+        Process process = new ProcessBuilder(buildCommand(videoFile, frames))
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        // Once the verdict is settled, by a frame or by the caller cancelling it, the decode is of no use
+        verdict.whenComplete((inappropriate, error) -> process.destroy());
+        // Bounds both the Rekognition calls in flight and the decoded frames held in memory
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<CompletableFuture<Void>> checks = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        // The reader blocks on the pipe, a decode that hangs is killed so the pipe ends
+        CompletableFuture.delayedExecutor(timeoutSeconds, TimeUnit.SECONDS).execute(process::destroyForcibly);
+        try (InputStream output = new BufferedInputStream(process.getInputStream())) {
+            byte[] frame;
+            while (!verdict.isDone() && (frame = readJpeg(output)) != null) {
+                if (!inFlight.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    throw new IOException("Keyframe moderation timed out after " + timeoutSeconds + " seconds");
+                }
+                byte[] image = frame;
+                checks.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        if (!verdict.isDone() && isInappropriate(image)) {
+                            verdict.complete(true);
+                            // Nothing left to decide, the decode is stopped
+                            process.destroy();
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                }, uploadStageExecutor));
+            }
+            if (verdict.isDone()) {
+                return;
+            }
+            process.onExit().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (process.exitValue() != 0) {
+                throw new IOException("Frame sampling failed with exit code " + process.exitValue());
+            }
+            if (checks.isEmpty()) {
+                throw new IOException("No frames could be sampled from " + videoFile.getName());
+            }
+            CompletableFuture.allOf(checks.toArray(CompletableFuture[]::new))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            log.info("LOG:: {} sampled frames of {} passed moderation", checks.size(), videoFile.getName());
+            verdict.complete(false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Keyframe moderation was interrupted", e);
+        } catch (TimeoutException e) {
+            throw new IOException("Keyframe moderation timed out after " + timeoutSeconds + " seconds", e);
+        } catch (ExecutionException e) {
+            // A failed frame check is a failed moderation, unless another frame has already decided it
+            if (!verdict.isDone()) {
+                throw new IOException("Frame moderation failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        } finally {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private List<String> buildCommand(File videoFile, int frames) {
+        // Decoder and filter threads, the decode competes with the encodes for the CPU
+        List<String> command = new ArrayList<>(Arrays.asList("ffmpeg", "-v", "error",
+                "-threads", String.valueOf(threads), "-filter_threads", String.valueOf(threads)));
+        double interval = sampleInterval(videoFile, frames);
+        String select;
+        if (sceneThreshold > 0) {
+            // The first frame and the scene changes at least one interval after the last sample; scene scores
+            // need every frame decoded
+            select = String.format(Locale.ROOT,
+                    "select='eq(n\\,0)+gt(scene\\,%.3f)*gte(t-prev_selected_t\\,%.3f)'", sceneThreshold, interval);
+        } else {
+            // Keyframes at least one interval apart, the frames between keyframes are never decoded
+            command.addAll(Arrays.asList("-skip_frame", "nokey"));
+            select = String.format(Locale.ROOT, "select='isnan(prev_selected_t)+gte(t-prev_selected_t\\,%.3f)'",
+                    interval);
+        }
+        command.addAll(Arrays.asList(
+                "-i", videoFile.getAbsolutePath(),
+                "-an",
+                "-vf", select + ",scale=" + frameWidth + ":-2",
+                "-vsync", "vfr",
+                "-frames:v", String.valueOf(frames),
+                "-f", "image2pipe",
+                "-c:v", "mjpeg",
+                "-q:v", "3",
+                "pipe:1"
+        ));
+        return command;
+    }
+
+    /**
+     * Seconds between samples so that {@code frames} cover the whole video, or zero (every keyframe) when the
+     * duration is unknown.
+     */
+    private double sampleInterval(File videoFile, int frames) {
+        VideoProbe probe = videoCompressionService.probe(videoFile);
+        if (probe == null || probe.getDurationSeconds() <= 0) {
+            return 0;
+        }
+        return probe.getDurationSeconds() / frames;
+    }
+
+    private boolean isInappropriate(byte[] frame) {
+        DetectModerationLabelsRequest request = DetectModerationLabelsRequest.builder()
+                .image(Image.builder().bytes(SdkBytes.fromByteArray(frame)).build())
+                .minConfidence(minConfidence)
+                .build();
+        moderatedFrames.increment();
+        return rekognitionClient.detectModerationLabels(request).moderationLabels().stream()
+                .anyMatch(label -> ModerationLabels.isInappropriate(label.name()));
+    }
+
+    /**
+     * Reads the next JPEG of an MJPEG pipe, or returns {@code null} at the end of the stream. Header segments
+     * are skipped by their length and the entropy-coded data is scanned for the next marker, so bytes inside
+     * tables are never taken for the end of the image.
+     */
+    static byte[] readJpeg(InputStream input) throws IOException {
+        int first = input.read();
+        if (first == -1) {
+            return null;
+        }
+        if (first != 0xFF || input.read() != SOI) {
+            throw new IOException("Frame pipe is not MJPEG");
+        }
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(64 * 1024);
+        frame.write(0xFF);
+        frame.write(SOI);
+        int marker = readMarker(input);
+        while (true) {
+            frame.write(0xFF);
+            frame.write(marker);
+            if (marker == EOI) {
+                return frame.toByteArray();
+            }
+            int length = (readByte(input) << 8) | readByte(input);
+            frame.write(length >> 8);
+            frame.write(length & 0xFF);
+            byte[] segment = input.readNBytes(length - 2);
+            if (segment.length < length - 2) {
+                throw new EOFException("Frame pipe ended inside a JPEG");
+            }
+            frame.write(segment);
+            if (marker != SOS) {
+                marker = readMarker(input);
+                continue;
+            }
+            // Entropy-coded data: 0xFF is followed by a stuffed zero or a restart marker, anything else ends it
+            while (true) {
+                int value = readByte(input);
+                if (value != 0xFF) {
+                    frame.write(value);
+                    continue;
+                }
+                int next = readByte(input);
+                // Fill bytes before the marker that ends the scan
+                while (next == 0xFF) {
+                    next = readByte(input);
+                }
+                if (next == 0x00 || (next >= 0xD0 && next <= 0xD7)) {
+                    frame.write(value);
+                    frame.write(next);
+                    continue;
+                }
+                marker = next;
+                break;
+            }
+        }
+    }
+
+    private static int readMarker(InputStream input) throws IOException {
+        if (readByte(input) != 0xFF) {
+            throw new IOException("Corrupt JPEG in frame pipe");
+        }
+        int marker = readByte(input);
+        // Fill bytes before a marker
+        while (marker == 0xFF) {
+            marker = readByte(input);
+        }
+        return marker;
+    }
+
+    private static int readByte(InputStream input) throws IOException {
+        int value = input.read();
+        if (value == -1) {
+            throw new EOFException("Frame pipe ended inside a JPEG");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,419 @@
+package com.example.s3_bucket.service.Impl;
+
+import com.example.s3_bucket.dto.CommonResponse;
+import com.example.s3_bucket.dto.ResumableUploadDto;
+import com.example.s3_bucket.enums.ImageType;
+import com.example.s3_bucket.enums.StatusType;
+import com.example.s3_bucket.service.ResumableUploadService;
+import com.example.s3_bucket.service.S3Service;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * tus-style resumable uploads. Each chunk is appended to a local spool file that holds the current S3 part;
+ * whenever the spool reaches the part size it is sent as the next part of a multipart upload to a private
+ * staging key under {@code quarantine/resumable/}. The received offset and the completed parts are persisted
+ * next to the spool in {@code upload.resumable.dir}, so uploads survive dropped connections and restarts.
+ * When the last byte arrives the object goes through {@link S3Service#processUploadedObject}. The local state
+ * is kept until processing succeeds, so a client can retry the final request with an empty chunk at the
+ * full offset.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ResumableUploadServiceImpl implements ResumableUploadService {
+
+    private static final String STAGING_PREFIX = "quarantine/resumable/";
+    private static final String STATE_SUFFIX = ".json";
+    private static final int MAX_PARTS = 10_000;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final S3Client s3Client;
+    private final S3Service s3Service;
+    private final ObjectMapper objectMapper;
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+    @Value("${api.class.s3.image.bucket-name}")
+    private String bucketName;
+
+    @Value("${upload.resumable.dir:${java.io.tmpdir}/resumable-uploads}")
+    private Path directory;
+
+    @Value("${upload.resumable.max-size:6000MB}")
+    private DataSize maxSize;
+
+    @Value("${upload.resumable.expiry-hours:24}")
+    private long expiryHours;
+
+    @Value("${s3.transfer.part-size:8MB}")
+    private DataSize partSize;
+
+    @PostConstruct
+    void init() throws IOException {
+        Files.createDirectories(directory);
+        log.info("LOG:: Resumable upload state kept in {}", directory);
+    }
+
+    @Override
+    public ResumableUploadDto create(String fileName, long length, ImageType imageType, String authUserId) {
+        String name = FilenameUtils.getName(fileName);
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Original filename is missing");
+        }
+        if (length <= 0 || length > maxSize.toBytes()) {
+            throw new IllegalArgumentException("Upload length must be between 1 byte and " + maxSize);
+        }
+        // Validates the extension before anything is stored
+        s3Service.resolveObjectKey(name);
+
+        UploadState state = new UploadState();
+        state.setUploadId(UUID.randomUUID().toString());
+        state.setAuthUserId(authUserId);
+        state.setFileName(name);
+        state.setImageType(imageType.name());
+        state.setLength(length);
+        // S3 allows at most 10,000 parts, so very large files get proportionally larger parts
+        state.setPartSize(Math.max(partSize.toBytes(), (length + MAX_PARTS - 1) / MAX_PARTS));
+        state.setKey(STAGING_PREFIX + authUserId + "/" + state.getUploadId() + "/" + name);
+        state.setS3UploadId(s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(state.getKey())
+                .contentType(s3Service.resolveContentType(name))
+                .metadata(Map.of("Title", "File Upload - " + name))
+                .build()).uploadId());
+        state.setCreatedAt(Instant.now());
+        state.setUpdatedAt(state.getCreatedAt());
+        try {
+            save(state);
+        } catch (IOException e) {
+            abort(state);
+            throw new IllegalStateException("Could not persist resumable upload", e);
+        }
+        log.info("LOG:: Created resumable upload {} for {} ({} bytes)", state.getUploadId(), name, length);
+        return toDto(state, 0, null);
+    }
+
+    @Override
+    public Optional<ResumableUploadDto> getUpload(String uploadId, String authUserId) {
+        return load(uploadId, authUserId).map(state -> toDto(state, offset(state), null));
+    }
+
+    @Override
+    public Optional<ResumableUploadDto> append(String uploadId, long offset, long contentLength, InputStream content,
+                                               String authUserId, String token) throws IOException {
+        Optional<UploadState> loaded = load(uploadId, authUserId);
+        if (loaded.isEmpty()) {
+            return Optional.empty();
+        }
+        ReentrantLock lock = locks.computeIfAbsent(uploadId, id -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            throw new IllegalStateException("Upload " + uploadId + " is already receiving a chunk");
+        }
+        try {
+            // Re-read under the lock, a concurrent request may have finished the upload meanwhile
+            UploadState state = load(uploadId, authUserId).orElse(null);
+            if (state == null) {
+                return Optional.empty();
+            }
+            long current = offset(state);
+            if (offset != current) {
+                throw new IllegalStateException("Upload-Offset " + offset + " does not match the stored offset " + current);
+            }
+            if (contentLength > state.getLength() - current) {
+                throw new IllegalArgumentException("Chunk exceeds the declared upload length");
+            }
+
+            try {
+                current = receive(state, content, current);
+            } finally {
+                state.setUpdatedAt(Instant.now());
+                save(state);
+            }
+
+            if (current < state.getLength()) {
+                return Optional.of(toDto(state, current, null));
+            }
+            // The last part is usually shorter than the part size, it is sent once everything has arrived
+            Path spool = spoolPath(state);
+            if (Files.exists(spool) && !state.isAssembled()) {
+                uploadPart(state, spool, Files.size(spool));
+            }
+            return Optional.of(toDto(state, current, complete(state, token)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean cancel(String uploadId, String authUserId) {
+        Optional<UploadState> state = load(uploadId, authUserId);
+        if (state.isEmpty()) {
+            return false;
+        }
+        ReentrantLock lock = locks.computeIfAbsent(uploadId, id -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            throw new IllegalStateException("Upload " + uploadId + " is already receiving a chunk");
+        }
+        try {
+            abort(state.get());
+            log.info("LOG:: Cancelled resumable upload {}", uploadId);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${upload.resumable.cleanup-interval-ms:600000}")
+    public void expireUploads() {
+        Instant cutoff = Instant.now().minus(Duration.ofHours(expiryHours));
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().endsWith(STATE_SUFFIX))
+                    .map(this::read)
+                    .flatMap(Optional::stream)
+                    .filter(state -> state.getUpdatedAt().isBefore(cutoff))
+                    .forEach(state -> {
+                        ReentrantLock lock = locks.computeIfAbsent(state.getUploadId(), id -> new ReentrantLock());
+                        if (lock.tryLock()) {
+                            try {
+                                log.info("LOG:: Expiring resumable upload {}", state.getUploadId());
+                                abort(state);
+                            } finally {
+                                lock.unlock();
+                            }
+                        }
+                    });
+        } catch (IOException e) {
+            log.warn("Failed to scan resumable uploads in {}", directory, e);
+        }
+    }
+
+    /**
+     * Copies the chunk into the spool, sending a part to S3 each time the spool is full. Returns the new
+     * offset. If the client disconnects, everything read so far stays in the spool.
+     */
+    private long receive(UploadState state, InputStream content, long offset) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long remaining = state.getLength() - offset;
+        while (remaining > 0) {
+            Path spool = spoolPath(state);
+            long spoolSize = Files.exists(spool) ? Files.size(spool) : 0;
+            long room = Math.min(state.getPartSize() - spoolSize, remaining);
+            long written = 0;
+            try (OutputStream out = Files.newOutputStream(spool, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                int read;
+                while (written < room
+                        && (read = content.read(buffer, 0, (int) Math.min(buffer.length, room - written))) != -1) {
+                    out.write(buffer, 0, read);
+                    written += read;
+                }
+            }
+            offset += written;
+            remaining -= written;
+            if (spoolSize + written == state.getPartSize()) {
+                uploadPart(state, spool, spoolSize + written);
+            }
+            if (written < room) {
+                break;
+            }
+        }
+        return offset;
+    }
+
+    private void uploadPart(UploadState state, Path spool, long size) throws IOException {
+        int partNumber = state.getParts().size() + 1;
+        UploadPartResponse response = s3Client.uploadPart(UploadPartRequest.builder()
+                .bucket(bucketName)
+                .key(state.getKey())
+                .uploadId(state.getS3UploadId())
+                .partNumber(partNumber)
+                .contentLength(size)
+                .build(), RequestBody.fromFile(spool));
+        state.getParts().add(new PartState(partNumber, response.eTag()));
+        // The part is recorded before the spool goes, so a crash in between never loses bytes
+        save(state);
+        Files.deleteIfExists(spool);
+        log.debug("Uploaded part {} of resumable upload {}", partNumber, state.getUploadId());
+    }
+
+    private CommonResponse complete(UploadState state, String token) throws IOException {
+        if (!state.isAssembled()) {
+            List<CompletedPart> parts = state.getParts().stream()
+                    .map(part -> CompletedPart.builder().partNumber(part.getPartNumber()).eTag(part.getEtag()).build())
+                    .toList();
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(state.getKey())
+                    .uploadId(state.getS3UploadId())
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build());
+            state.setAssembled(true);
+            save(state);
+            log.info("LOG:: Resumable upload {} received all {} bytes", state.getUploadId(), state.getLength());
+        }
+        CommonResponse response = s3Service.processUploadedObject(state.getKey(), state.getFileName(),
+                state.getAuthUserId(), token, ImageType.valueOf(state.getImageType()));
+        if (response.getStatus() == StatusType.STATUS_SUCCESS || !stagingObjectExists(state)) {
+            deleteLocalFiles(state.getUploadId());
+        } else {
+            // A failed attempt leaves the staging object in place, the final request can simply be retried
+            log.warn("Processing of resumable upload {} failed, keeping it for a retry", state.getUploadId());
+        }
+        return response;
+    }
+
+    private boolean stagingObjectExists(UploadState state) {
+        try {
+            s3Client.headObject(HeadObjectRequest.builder().bucket(bucketName).key(state.getKey()).build());
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        } catch (SdkException e) {
+            log.warn("Could not check staging object of resumable upload {}", state.getUploadId(), e);
+            return true;
+        }
+    }
+
+    private void abort(UploadState state) {
+        try {
+            if (state.isAssembled()) {
+                s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucketName).key(state.getKey()).build());
+            } else {
+                s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(state.getKey())
+                        .uploadId(state.getS3UploadId())
+                        .build());
+            }
+        } catch (SdkException e) {
+            log.warn("Failed to abort multipart upload of resumable upload {}", state.getUploadId(), e);
+        }
+        deleteLocalFiles(state.getUploadId());
+    }
+
+    private long offset(UploadState state) {
+        try {
+            Path spool = spoolPath(state);
+            long spooled = Files.exists(spool) ? Files.size(spool) : 0;
+            // Only the final part can be shorter than the part size
+            return Math.min(state.getLength(), state.getParts().size() * state.getPartSize() + spooled);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read spool of upload " + state.getUploadId(), e);
+        }
+    }
+
+    private Path spoolPath(UploadState state) {
+        return directory.resolve(state.getUploadId() + "." + (state.getParts().size() + 1) + ".part");
+    }
+
+    private Optional<UploadState> load(String uploadId, String authUserId) {
+        try {
+            // Ids are UUIDs, anything else must not be resolved against the state directory
+            UUID.fromString(uploadId);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        return read(directory.resolve(uploadId + STATE_SUFFIX))
+                .filter(state -> state.getAuthUserId().equals(authUserId));
+    }
+
+    private Optional<UploadState> read(Path path) {
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(path.toFile(), UploadState.class));
+        } catch (IOException e) {
+            log.warn("Failed to read resumable upload state {}", path, e);
+            return Optional.empty();
+        }
+    }
+
+    private void save(UploadState state) throws IOException {
+        // Written to a temporary file first, so a crash never leaves half a state file behind
+        Path target = directory.resolve(state.getUploadId() + STATE_SUFFIX);
+        Path temp = directory.resolve(state.getUploadId() + STATE_SUFFIX + ".tmp");
+        objectMapper.writeValue(temp.toFile(), state);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteLocalFiles(String uploadId) {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().startsWith(uploadId + "."))
+                    .forEach(path -> {
+                        try {
+                            Files.deleteIfExists(path);
+                        } catch (IOException e) {
+                            log.warn("Failed to delete {}", path, e);
+                        }
+                    });
+        } catch (IOException e) {
+            log.warn("Failed to clean up resumable upload {}", uploadId, e);
+        }
+        locks.remove(uploadId);
+    }
+
+    private ResumableUploadDto toDto(UploadState state, long offset, CommonResponse result) {
+        return ResumableUploadDto.builder()
+                .uploadId(state.getUploadId())
+                .fileName(state.getFileName())
+                .offset(offset)
+                .length(state.getLength())
+                .expiresAt(state.getUpdatedAt().plus(Duration.ofHours(expiryHours)))
+                .result(result)
+                .build();
+    }
+
+    @Data
+    @NoArgsConstructor
+    static class UploadState {
+        private String uploadId;
+        private String authUserId;
+        private String fileName;
+        private String imageType;
+        private long length;
+        private long partSize;
+        private String key;
+        private String s3UploadId;
+        private boolean assembled;
+        private List<PartState> parts = new ArrayList<>();
+        private Instant createdAt;
+        private Instant updatedAt;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class PartState {
+        private int partNumber;
+        private String etag;
+    }
+}
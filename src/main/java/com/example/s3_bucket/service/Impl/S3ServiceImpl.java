@@ -1,29 +1,45 @@
 package com.example.s3_bucket.service.Impl;
 
 import com.example.s3_bucket.dto.*;
+import com.example.s3_bucket.enums.ImageModerationMode;
+import com.example.s3_bucket.enums.ImageVariant;
+import com.example.s3_bucket.enums.ImageVariantEngine;
 import com.example.s3_bucket.enums.ImageType;
+import com.example.s3_bucket.enums.VideoModerationMode;
+import com.example.s3_bucket.service.HlsPackagingService;
 import com.example.s3_bucket.service.ImageProcessingService;
+import com.example.s3_bucket.service.ImageVariantService;
+import com.example.s3_bucket.service.KeyframeModerationService;
+import com.example.s3_bucket.service.TranscodeScheduler;
 import com.example.s3_bucket.service.S3Service;
+import com.example.s3_bucket.service.S3TransferService;
+import com.example.s3_bucket.service.UploadDedupService;
 import com.example.s3_bucket.service.UserService;
 import com.example.s3_bucket.service.VideoCompressionService;
+import com.example.s3_bucket.service.VideoModerationService;
 import com.example.s3_bucket.enums.CommonMessages;
 import com.example.s3_bucket.enums.StatusType;
+import com.example.s3_bucket.exceptions.TranscodeRejectedException;
+import com.example.s3_bucket.util.ContentHash;
+import com.example.s3_bucket.util.ModerationImageProxy;
+import com.example.s3_bucket.util.ModerationLabels;
 import com.example.s3_bucket.util.ValidateImageVideo;
 import com.spordee.user.dto.request.PostCount;
 
-import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.core.SdkBytes;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.regions.Region;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import software.amazon.awssdk.services.rekognition.RekognitionClient;
 import software.amazon.awssdk.services.rekognition.model.*;
 import software.amazon.awssdk.services.rekognition.model.S3Object;
@@ -32,16 +48,34 @@ import software.amazon.awssdk.services.s3.model.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class S3ServiceImpl implements S3Service {
+    private static final String QUARANTINE_PREFIX = "quarantine/";
+    private static final String HLS_FOLDER = "video/hls/";
+
     private static final Map<String, String> CONTENT_TYPES = Map.of(
             "pdf", "application/pdf",
             "heic", "image/png",
@@ -53,19 +87,14 @@ public class S3ServiceImpl implements S3Service {
             "mov", "video/mov"
     );
 
-    private static final Set<String> INAPPROPRIATE_LABELS = Set.of(
-            "Explicit", "Non-Explicit Nudity of Intimate parts and Kissing",
-            "Violence", "Visually Disturbing", "Drugs & Tobacco", "Alcohol",
-            "Rude Gestures", "Gambling", "Hate Symbols"
-    );
     private final ImageProcessingService imageProcessingService;
+    private final ImageVariantService imageVariantService;
 
-    private S3Client s3Client;
-    private RekognitionClient rekognitionClient;
+    private final S3Client s3Client;
+    private final RekognitionClient rekognitionClient;
+    private final S3TransferService s3TransferService;
     private final ValidateImageVideo validateImageVideo;
-
-    @Value("${api.class.s3.image.access-key}")
-    private String accessKey;
+    private final ModerationImageProxy moderationImageProxy;
 
     @Value("${api.class.s3.image.bucket-name}")
     private String bucketName;
@@ -73,9 +102,6 @@ public class S3ServiceImpl implements S3Service {
     @Value("${cloud-front.url}")
     private String cloudFrontUrl;
 
-    @Value("${api.class.s3.image.secret-key}")
-    private String secretKey;
-
     @Value("${rekognition.image-count}")
     private Integer imageCount;
 
@@ -85,76 +111,413 @@ public class S3ServiceImpl implements S3Service {
     @Value("${rekognition.minimum.confidence}")
     private Float minConfidence;
 
-    @Value("${aws.bucket.region}")
-    private String region;
+    @Value("${rekognition.image.mode:INLINE_BYTES}")
+    private ImageModerationMode imageModerationMode;
+
+    @Value("${upload.streaming.enabled:false}")
+    private boolean streamingEnabled;
+
+    @Value("${video.compression.streaming.enabled:false}")
+    private boolean videoStreamingEnabled;
+
+    @Value("${image.variants.engine:LOCAL}")
+    private ImageVariantEngine imageVariantEngine;
+
+    @Value("${image.variants.lazy:false}")
+    private boolean lazyVariants;
+
+    @Value("${image.variants.background.enabled:true}")
+    private boolean backgroundVariants;
 
     private final VideoCompressionService videoCompressionService;
+    private final HlsPackagingService hlsPackagingService;
+    private final TranscodeScheduler transcodeScheduler;
+    private final VideoModerationService videoModerationService;
+    private final KeyframeModerationService keyframeModerationService;
     private final UserService userService;
+    private final UploadDedupService uploadDedupService;
+    @Qualifier("uploadStageExecutor")
+    private final Executor uploadStageExecutor;
+    @Qualifier("uploadBatchExecutor")
+    private final Executor uploadBatchExecutor;
+    @Qualifier("videoPackagingExecutor")
+    private final Executor videoPackagingExecutor;
 
-    @PostConstruct
-    private void initializeAWSClients() {
-        AwsBasicCredentials awsCredentials = AwsBasicCredentials.create(accessKey, secretKey);
-        log.info("LOG:: Initializing AWS credentials using region: {}", region);
-        Region awsRegion = Region.of(region);
-        log.info("LOG:: Initializing AWS S3 and Rekognition clients with region: {}", awsRegion);
-        
-        this.s3Client = S3Client.builder()
-                .region(awsRegion)
-                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
-                .build();
+    @Value("${upload.batch.parallelism:4}")
+    private int batchParallelism;
 
-        this.rekognitionClient = RekognitionClient.builder()
-                .region(awsRegion)
-                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
-                .build();
-    }
+    @Value("${upload.batch.max-files:20}")
+    private int batchMaxFiles;
 
     @Override
     public CommonResponse uploadFile(MultipartFile multipartFile, String authUserId, String token, ImageType imageType) {
+        TranscodeScheduler.Ticket ticket = admitVideo(multipartFile.getOriginalFilename());
         try {
-            PostCount oldPostCount = userService.getPostCount(authUserId, token);
+            CompletableFuture<PostCount> postCount = fetchPostCount(authUserId, token);
 //            PostCount oldPostCount = PostCount.builder().imageCount(0L).videoCount(0L).build();
             String originalFilename = validateAndGetFilename(multipartFile);
             String extension = validateAndGetExtension(originalFilename);
             log.info("LOG:: Uploading file {} with extension {}", originalFilename, extension);
-            return getCommonResponse(multipartFile, oldPostCount, originalFilename, extension, imageType);
+            return countUpload(authUserId, extension, imageType,
+                    getCommonResponse(authUserId, multipartFile, postCount, originalFilename, extension, imageType));
         } catch (Exception e) {
             log.error("Error during file upload", e);
             return buildFailureResponse("File upload failed: " + e.getMessage());
+        } finally {
+            ticket.close();
+        }
+    }
+
+    @Override
+    public CommonResponse uploadFileStream(InputStream inputStream, String originalFilename, String authUserId,
+                                           String token, ImageType imageType) {
+        TranscodeScheduler.Ticket ticket = admitVideo(originalFilename);
+        try {
+            CompletableFuture<PostCount> postCount = fetchPostCount(authUserId, token);
+            String extension = validateAndGetExtension(originalFilename);
+            log.info("LOG:: Streaming upload of file {} with extension {}", originalFilename, extension);
+            if (validateImageVideo.isVideo(extension)) {
+                // ffmpeg needs a seekable local input, so videos are still staged on disk
+                MessageDigest digest = uploadDedupService.isEnabled() ? ContentHash.newDigest() : null;
+                File tempFile = createTempFile(inputStream, originalFilename, digest);
+                return countUpload(authUserId, extension, imageType,
+                        getCommonResponse(authUserId, tempFile, toHex(digest), postCount, originalFilename,
+                                extension, imageType));
+            }
+            return countUpload(authUserId, extension, imageType,
+                    getStreamedResponse(authUserId, inputStream, postCount, originalFilename, extension, imageType));
+        } catch (Exception e) {
+            log.error("Error during streaming file upload", e);
+            return buildFailureResponse("File upload failed: " + e.getMessage());
+        } finally {
+            ticket.close();
+        }
+    }
+
+    @Override
+    public CommonResponse uploadStagedFile(File stagedFile, String originalFilename, String authUserId,
+                                           PostCount resolvedPostCount, ImageType imageType) {
+        try {
+            CompletableFuture<PostCount> postCount = CompletableFuture.completedFuture(resolvedPostCount);
+            String extension = validateAndGetExtension(originalFilename);
+            return countUpload(authUserId, extension, imageType,
+                    getStagedResponse(authUserId, stagedFile, postCount, originalFilename, extension, imageType));
+        } catch (Exception e) {
+            log.error("Error during staged file upload", e);
+            cleanupFiles(stagedFile);
+            return buildFailureResponse("File upload failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public CommonResponse uploadFiles(List<MultipartFile> multipartFiles, String authUserId, String token, ImageType imageType) {
+        if (multipartFiles == null || multipartFiles.isEmpty() || multipartFiles.size() > batchMaxFiles) {
+            return CommonResponse.builder()
+                    .data("A batch must contain between 1 and " + batchMaxFiles + " files")
+                    .meta(new MetaData(true, CommonMessages.REQUEST_FAIL, 400, "Invalid batch size"))
+                    .status(StatusType.STATUS_FAIL)
+                    .build();
+        }
+        log.info("LOG:: Uploading batch of {} files with parallelism {}", multipartFiles.size(), batchParallelism);
+        // The quota is resolved once and shared by every file in the batch
+        CompletableFuture<PostCount> postCount = fetchPostCount(authUserId, token);
+
+        Semaphore slots = new Semaphore(batchParallelism);
+        List<CompletableFuture<BatchUploadItemDto>> items = new ArrayList<>(multipartFiles.size());
+        for (MultipartFile multipartFile : multipartFiles) {
+            try {
+                slots.acquire();
+                items.add(CompletableFuture.supplyAsync(() -> uploadBatchItem(multipartFile, postCount, authUserId, imageType), uploadBatchExecutor)
+                        .whenComplete((item, error) -> slots.release()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                items.add(CompletableFuture.completedFuture(failedBatchItem(multipartFile, "Batch upload interrupted")));
+            } catch (TaskRejectedException e) {
+                slots.release();
+                items.add(CompletableFuture.completedFuture(failedBatchItem(multipartFile, "Upload queue is full, retry later")));
+            }
+        }
+
+        List<BatchUploadItemDto> results = items.stream().map(CompletableFuture::join).toList();
+        long succeeded = results.stream().filter(item -> item.getStatus() == StatusType.STATUS_SUCCESS).count();
+        String description = "Uploaded " + succeeded + " of " + results.size() + " files";
+        log.info("LOG:: {}", description);
+
+        MetaData meta;
+        if (succeeded == results.size()) {
+            meta = new MetaData(false, CommonMessages.REQUEST_SUCCESS, 200, description);
+        } else if (succeeded > 0) {
+            meta = new MetaData(false, CommonMessages.PARTIAL_SUCCESS, 207, description);
+        } else {
+            meta = new MetaData(true, CommonMessages.REQUEST_FAIL, 400, description);
+        }
+        return CommonResponse.builder()
+                .data(results)
+                .meta(meta)
+                .status(succeeded > 0 ? StatusType.STATUS_SUCCESS : StatusType.STATUS_FAIL)
+                .build();
+    }
+
+    private BatchUploadItemDto uploadBatchItem(MultipartFile multipartFile, CompletableFuture<PostCount> postCount,
+                                               String authUserId, ImageType imageType) {
+        try (TranscodeScheduler.Ticket ticket = admitVideo(multipartFile.getOriginalFilename())) {
+            String originalFilename = validateAndGetFilename(multipartFile);
+            String extension = validateAndGetExtension(originalFilename);
+            CommonResponse response = countUpload(authUserId, extension, imageType,
+                    getCommonResponse(authUserId, multipartFile, postCount, originalFilename, extension, imageType));
+            if (response.getStatus() == StatusType.STATUS_SUCCESS && response.getData() instanceof ImageDto imageDto) {
+                return BatchUploadItemDto.builder()
+                        .fileName(originalFilename)
+                        .status(StatusType.STATUS_SUCCESS)
+                        .result(imageDto)
+                        .build();
+            }
+            String message = response.getData() instanceof String data ? data : response.getMeta().getDescription();
+            return failedBatchItem(multipartFile, message);
+        } catch (Exception e) {
+            log.error("Error during batch upload of {}", multipartFile.getOriginalFilename(), e);
+            return failedBatchItem(multipartFile, "File upload failed: " + e.getMessage());
+        }
+    }
+
+    private BatchUploadItemDto failedBatchItem(MultipartFile multipartFile, String message) {
+        return BatchUploadItemDto.builder()
+                .fileName(multipartFile.getOriginalFilename())
+                .status(StatusType.STATUS_FAIL)
+                .message(message)
+                .build();
+    }
+
+    @Override
+    public Mono<CommonResponse> uploadFileContent(Flux<DataBuffer> content, String originalFilename, String authUserId,
+                                                  String token, ImageType imageType) {
+        String extension;
+        try {
+            extension = validateAndGetExtension(originalFilename);
+        } catch (IllegalArgumentException e) {
+            // The body is never subscribed, so the server discards it instead of it being read first
+            return Mono.just(buildFailureResponse("File upload failed: " + e.getMessage()));
+        }
+        TranscodeScheduler.Ticket ticket;
+        try {
+            ticket = admitVideo(originalFilename);
+        } catch (TranscodeRejectedException e) {
+            return Mono.error(e);
+        }
+        CompletableFuture<PostCount> postCount = fetchPostCount(authUserId, token);
+        log.info("LOG:: Reactive upload of file {} with extension {}", originalFilename, extension);
+
+        Mono<CommonResponse> response;
+        if (validateImageVideo.isVideo(extension)) {
+            // ffmpeg needs a seekable local input, the spool to disk is written without blocking
+            response = Mono.fromCallable(() -> Files.createTempFile("temp", originalFilename))
+                    .flatMap(tempFile -> DataBufferUtils.write(content, tempFile)
+                            .then(Mono.fromCallable(() -> getStagedResponse(authUserId, tempFile.toFile(), postCount,
+                                    originalFilename, extension, imageType)))
+                            .doOnError(error -> cleanupFiles(tempFile.toFile())))
+                    .subscribeOn(Schedulers.boundedElastic());
+        } else {
+            // Only images wait for the post count before the first byte goes out
+            Mono<Boolean> moderate = validateImageVideo.isImage(extension)
+                    ? Mono.fromFuture(postCount).map(count -> count.getImageCount() < imageCount)
+                    : Mono.just(false);
+            response = moderate.flatMap(requiresModeration -> {
+                String s3Key = getS3FolderPath(extension) + originalFilename;
+                String uploadKey = requiresModeration ? QUARANTINE_PREFIX + s3Key : s3Key;
+                return s3TransferService.uploadContent(content, uploadKey, resolveContentType(originalFilename),
+                                buildMetadata(originalFilename), !requiresModeration)
+                        .publishOn(Schedulers.boundedElastic())
+                        .flatMap(transfer -> Mono.fromCallable(() -> completeStreamedResponse(authUserId, transfer,
+                                s3Key, uploadKey, requiresModeration, postCount, originalFilename, extension, imageType))
+                                .doOnError(error -> discardStagedUpload(uploadKey, s3Key)));
+            });
+        }
+        return response.map(result -> countUpload(authUserId, extension, imageType, result)).onErrorResume(e -> {
+            log.error("Error during reactive file upload", e);
+            return Mono.just(buildFailureResponse("File upload failed: " + e.getMessage()));
+        }).doFinally(signal -> ticket.close());
+    }
+
+    @Override
+    public String resolveObjectKey(String originalFilename) {
+        return getS3FolderPath(validateAndGetExtension(originalFilename)) + originalFilename;
+    }
+
+    @Override
+    public CommonResponse processUploadedObject(String stagingKey, String originalFilename, String authUserId,
+                                                String token, ImageType imageType) {
+        try {
+            CompletableFuture<PostCount> postCount = fetchPostCount(authUserId, token);
+            String extension = validateAndGetExtension(originalFilename);
+            log.info("LOG:: Processing directly uploaded object {} as {}", stagingKey, originalFilename);
+            if (validateImageVideo.isVideo(extension)) {
+                try (TranscodeScheduler.Ticket ticket = transcodeScheduler.admit()) {
+                    // ffmpeg needs a local input, so the original is pulled back once for compression
+                    MessageDigest digest = uploadDedupService.isEnabled() ? ContentHash.newDigest() : null;
+                    File tempFile;
+                    try (InputStream object = s3Client.getObject(GetObjectRequest.builder()
+                            .bucket(bucketName)
+                            .key(stagingKey)
+                            .build())) {
+                        tempFile = createTempFile(object, originalFilename, digest);
+                    }
+                    CommonResponse response = getCommonResponse(authUserId, tempFile, toHex(digest), postCount,
+                            originalFilename, extension, imageType);
+                    // Only a finished attempt drops the staging object, after a failure the caller can retry
+                    deleteObject(stagingKey);
+                    return countUpload(authUserId, extension, imageType, response);
+                }
+            }
+
+            // Everything else is moderated and promoted in place, the bytes never pass through this service
+            String s3Key = getS3FolderPath(extension) + originalFilename;
+            TransferResult transfer = TransferResult.builder().key(stagingKey).build();
+            return countUpload(authUserId, extension, imageType,
+                    completeStreamedResponse(authUserId, transfer, s3Key, stagingKey,
+                            requiresModeration(extension, postCount), postCount, originalFilename, extension, imageType));
+        } catch (TranscodeRejectedException e) {
+            // The staging object stays, the client retries once the queue has room
+            throw e;
+        } catch (Exception e) {
+            log.error("Error while processing directly uploaded object {}", stagingKey, e);
+            return buildFailureResponse("File upload failed: " + e.getMessage());
         }
     }
 
-    private CommonResponse getCommonResponse(MultipartFile multipartFile, PostCount oldPostCount,
-                                             String originalFilename, String extension, ImageType imageType) throws Exception {
+    private CommonResponse getStagedResponse(String authUserId, File stagedFile,
+                                             CompletableFuture<PostCount> postCount, String originalFilename,
+                                             String extension, ImageType imageType) throws Exception {
+        log.info("LOG:: Processing staged file {} with extension {}", originalFilename, extension);
+        String contentHash = uploadDedupService.isEnabled() ? ContentHash.sha256(stagedFile) : null;
+        return getCommonResponse(authUserId, stagedFile, contentHash, postCount, originalFilename, extension,
+                imageType);
+    }
+
+    private CommonResponse getCommonResponse(String authUserId, MultipartFile multipartFile,
+                                             CompletableFuture<PostCount> postCount, String originalFilename,
+                                             String extension, ImageType imageType) throws Exception {
+        if (streamingEnabled && !validateImageVideo.isVideo(extension)) {
+            try (InputStream inputStream = multipartFile.getInputStream()) {
+                return getStreamedResponse(authUserId, inputStream, postCount, originalFilename, extension, imageType);
+            }
+        }
+        if (uploadDedupService.isEnabled()) {
+            // Hash while copying so duplicates are found without a second pass over the file
+            MessageDigest digest = ContentHash.newDigest();
+            File tempFile = createTempFile(multipartFile.getInputStream(), originalFilename, digest);
+            return getCommonResponse(authUserId, tempFile, toHex(digest), postCount, originalFilename, extension,
+                    imageType);
+        }
         File tempFile = createTempFile(multipartFile, originalFilename);
+        return getCommonResponse(authUserId, tempFile, null, postCount, originalFilename, extension, imageType);
+    }
+
+    private CommonResponse getCommonResponse(String authUserId, File tempFile, String contentHash,
+                                             CompletableFuture<PostCount> postCount, String originalFilename,
+                                             String extension, ImageType imageType) throws Exception {
         log.info("LOG:: Created temporary file {}", tempFile.getName());
-        ProcessedFileInfo processedInfo = processFile(tempFile, originalFilename, extension, oldPostCount);
+        Optional<DedupEntry> duplicate = findDuplicate(authUserId, contentHash, extension, postCount);
+        if (duplicate.isPresent()) {
+            cleanupFiles(tempFile);
+            return buildDuplicateResponse(duplicate.get(), imageType);
+        }
+
+        ProcessedFileInfo processedInfo = processFile(tempFile, originalFilename, extension, postCount, imageType);
+        processedInfo.setOwnerId(authUserId);
+        processedInfo.setContentHash(contentHash);
+        CompletableFuture<String> imageUrl;
         try {
             if (processedInfo.isInappropriate()) {
+                recordUpload(processedInfo, null);
                 return handleRequestError();
             }
-
-            String imageUrl = uploadProcessedFile(processedInfo, imageType);
-            log.info("LOG:: File uploaded successfully to S3, image URL: {}", imageUrl);
-            return buildSuccessResponse(imageUrl);
+            imageUrl = uploadProcessedFile(processedInfo, imageType);
         } finally {
+            // Local files are released while the variants are still being generated
             cleanupFiles(tempFile, processedInfo.getProcessedFile());
         }
+        String resolvedUrl = await(imageUrl);
+        log.info("LOG:: File uploaded successfully to S3, image URL: {}", resolvedUrl);
+        return buildSuccessResponse(resolvedUrl, toCloudFrontUrl(processedInfo.getHlsKey()));
+    }
+
+    private CommonResponse getStreamedResponse(String authUserId, InputStream inputStream,
+                                               CompletableFuture<PostCount> postCount, String originalFilename,
+                                               String extension, ImageType imageType) throws IOException {
+        String s3Key = getS3FolderPath(extension) + originalFilename;
+        // Only images need the post count before the first byte is sent, everything else streams right away
+        boolean moderate = requiresModeration(extension, postCount);
+        // Images awaiting moderation land in quarantine so they are never public before they pass
+        String uploadKey = moderate ? QUARANTINE_PREFIX + s3Key : s3Key;
+        TransferResult transfer = s3TransferService.uploadStream(inputStream, uploadKey,
+                resolveContentType(originalFilename), buildMetadata(originalFilename), !moderate);
+        try {
+            return completeStreamedResponse(authUserId, transfer, s3Key, uploadKey, moderate, postCount,
+                    originalFilename, extension, imageType);
+        } catch (IOException | RuntimeException e) {
+            discardStagedUpload(uploadKey, s3Key);
+            throw e;
+        }
+    }
+
+    /**
+     * Finishes an upload whose bytes are already in the bucket under {@code uploadKey}, promoting it to
+     * {@code s3Key} when the two differ.
+     */
+    private CommonResponse completeStreamedResponse(String authUserId, TransferResult transfer, String s3Key,
+                                                    String uploadKey, boolean moderate, CompletableFuture<PostCount> postCount,
+                                                    String originalFilename, String extension,
+                                                    ImageType imageType) throws IOException {
+        // The hash is only known once the stream is consumed, so a duplicate still costs the transfer
+        // but skips moderation and variant generation
+        Optional<DedupEntry> duplicate = findDuplicate(authUserId, transfer.getContentHash(), extension, postCount);
+        if (duplicate.isPresent()) {
+            if (duplicate.get().isInappropriate() || !uploadKey.equals(duplicate.get().getS3Key())) {
+                deleteObject(uploadKey);
+            }
+            return buildDuplicateResponse(duplicate.get(), imageType);
+        }
+
+        ProcessedFileInfo info = new ProcessedFileInfo();
+        info.setFinalFilename(originalFilename);
+        info.setOwnerId(authUserId);
+        info.setContentHash(transfer.getContentHash());
+        info.setUploaded(true);
+
+        // The bytes were never held locally, so Rekognition reads the image straight from the bucket
+        if (moderate) {
+            info.setModerated(true);
+            info.setInappropriate(checkImageModeration(uploadKey));
+            settleQuarantine(uploadKey, s3Key, info.isInappropriate());
+        } else if (!uploadKey.equals(s3Key)) {
+            settleQuarantine(uploadKey, s3Key, false);
+        }
+        if (info.isInappropriate()) {
+            recordUpload(info, null);
+            return handleRequestError();
+        }
+
+        String imageUrl = await(uploadProcessedFile(info, imageType));
+        log.info("LOG:: File streamed successfully to S3, image URL: {}", imageUrl);
+        return buildSuccessResponse(imageUrl);
     }
 
     @Override
     public CommonResponse updatePhoto(String imageUrl, MultipartFile multipartFile, String authUserId, String token, ImageType imageType) {
+        TranscodeScheduler.Ticket ticket = admitVideo(multipartFile.getOriginalFilename());
         try {
-            PostCount oldPostCount = userService.getPostCount(authUserId, token);
+            CompletableFuture<PostCount> postCount = fetchPostCount(authUserId, token);
             String originalFilename = validateAndGetFilename(multipartFile);
             String extension = validateAndGetExtension(originalFilename);
 
             deleteExistingObject(imageUrl);
 
-            return getCommonResponse(multipartFile, oldPostCount, originalFilename, extension, imageType);
+            return getCommonResponse(authUserId, multipartFile, postCount, originalFilename, extension, imageType);
         } catch (Exception e) {
             log.error("Error during photo update", e);
             return buildFailureResponse("Photo update failed: " + e.getMessage());
+        } finally {
+            ticket.close();
         }
     }
 
@@ -167,6 +530,32 @@ public class S3ServiceImpl implements S3Service {
         }
     }
 
+    /**
+     * Drops the private copy of a streamed upload that failed before it was published. The public key is left
+     * alone, an unmoderated image never reaches it.
+     */
+    private void discardStagedUpload(String uploadKey, String s3Key) {
+        if (!uploadKey.equals(s3Key)) {
+            deleteObjectAsync(uploadKey);
+        }
+    }
+
+    private void deleteObjectAsync(String s3Key) {
+        try {
+            CompletableFuture.runAsync(() -> deleteObject(s3Key), uploadStageExecutor);
+        } catch (TaskRejectedException e) {
+            deleteObject(s3Key);
+        }
+    }
+
+    private void deleteObject(String s3Key) {
+        try {
+            s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucketName).key(s3Key).build());
+        } catch (Exception e) {
+            log.warn("Failed to delete object: {}", s3Key, e);
+        }
+    }
+
     private String validateAndGetFilename(MultipartFile file) {
         String filename = file.getOriginalFilename();
         if (filename == null || filename.isEmpty()) {
@@ -190,7 +579,163 @@ public class S3ServiceImpl implements S3Service {
         return tempFile;
     }
 
-    private ProcessedFileInfo processFile(File tempFile, String originalFilename, String extension, PostCount postCount) throws Exception {
+    private File createTempFile(InputStream inputStream, String originalFilename, MessageDigest digest) throws IOException {
+        Path tempFilePath = Files.createTempFile("temp", originalFilename);
+        try (InputStream source = digest == null ? inputStream : new DigestInputStream(inputStream, digest)) {
+            Files.copy(source, tempFilePath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return tempFilePath.toFile();
+    }
+
+    private String toHex(MessageDigest digest) {
+        return digest == null ? null : ContentHash.toHex(digest);
+    }
+
+    @Override
+    public TranscodeScheduler.Ticket admitVideo(String filename) {
+        String extension = FilenameUtils.getExtension(filename);
+        if (extension != null && validateImageVideo.isVideo(extension.toLowerCase())) {
+            return transcodeScheduler.admit();
+        }
+        return TranscodeScheduler.Ticket.NONE;
+    }
+
+    /**
+     * Starts the post count lookup on the stage pool so it runs while the body is still being received.
+     */
+    private CompletableFuture<PostCount> fetchPostCount(String authUserId, String token) {
+        try {
+            return CompletableFuture.supplyAsync(() -> userService.getPostCount(authUserId, token), uploadStageExecutor);
+        } catch (TaskRejectedException e) {
+            return CompletableFuture.completedFuture(userService.getPostCount(authUserId, token));
+        }
+    }
+
+    /**
+     * Counts a successful post upload against the cached post count of the user.
+     */
+    private CommonResponse countUpload(String authUserId, String extension, ImageType imageType, CommonResponse response) {
+        boolean video = validateImageVideo.isVideo(extension);
+        if (imageType == ImageType.POST && response.getStatus() == StatusType.STATUS_SUCCESS
+                && (video || validateImageVideo.isImage(extension))) {
+            userService.recordUpload(authUserId, video);
+        }
+        return response;
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Only waits for the post count when the file type is moderated at all.
+     */
+    private boolean requiresModeration(String extension, CompletableFuture<PostCount> postCount) {
+        if (validateImageVideo.isVideo(extension)) {
+            return await(postCount).getVideoCount() < videoCount;
+        }
+        return validateImageVideo.isImage(extension) && await(postCount).getImageCount() < imageCount;
+    }
+
+    /**
+     * Looks up an earlier upload of identical bytes by the same user. Entries recorded without moderation are only
+     * reused when this upload would not be moderated either. Keys are derived from the filename, so an entry is
+     * dropped once its object has disappeared or been replaced by another upload under the same name.
+     */
+    private Optional<DedupEntry> findDuplicate(String authUserId, String contentHash, String extension,
+                                               CompletableFuture<PostCount> postCount) {
+        return uploadDedupService.find(authUserId, contentHash)
+                .filter(entry -> entry.isModerated() || !requiresModeration(extension, postCount))
+                .filter(entry -> entry.isInappropriate() || objectUnchanged(entry))
+                .map(entry -> {
+                    log.info("LOG:: Duplicate upload detected, reusing {} (hash {})", entry.getS3Key(), contentHash);
+                    return entry;
+                });
+    }
+
+    private boolean objectUnchanged(DedupEntry entry) {
+        try {
+            String etag = s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(entry.getS3Key())
+                    .build()).eTag();
+            if (entry.getEtag() == null || !entry.getEtag().equals(etag)) {
+                log.info("LOG:: Deduplicated object {} was replaced, dropping its entry", entry.getS3Key());
+                uploadDedupService.evict(entry.getOwnerId(), entry.getContentHash());
+                return false;
+            }
+            return true;
+        } catch (NoSuchKeyException e) {
+            uploadDedupService.evict(entry.getOwnerId(), entry.getContentHash());
+            return false;
+        } catch (Exception e) {
+            log.warn("Could not verify deduplicated object {}", entry.getS3Key(), e);
+            return false;
+        }
+    }
+
+    private CommonResponse buildDuplicateResponse(DedupEntry entry, ImageType imageType) {
+        if (entry.isInappropriate()) {
+            return handleRequestError();
+        }
+        String url = resolveImageUrl(entry.getUrl(), imageType, entry.getVariantUrls());
+        if (url == null) {
+            // With lazy variants the first upload only rendered the variant its own image type needed
+            url = resolveLazyVariant(entry, imageType);
+        }
+        return buildSuccessResponse(url, entry.getHlsUrl());
+    }
+
+    private String resolveLazyVariant(DedupEntry entry, ImageType imageType) {
+        try {
+            String url = imageVariantService.getVariantUrl(FilenameUtils.getName(entry.getS3Key()),
+                    ImageVariant.forImageType(imageType)).join();
+            return url != null ? url : entry.getUrl();
+        } catch (Exception e) {
+            log.warn("Could not render {} variant of {}", imageType, entry.getS3Key(), e);
+            return entry.getUrl();
+        }
+    }
+
+    private void recordUpload(ProcessedFileInfo info, ImageProcessingResponseDTO.Urls variantUrls) {
+        if (info.getContentHash() == null) {
+            return;
+        }
+        String extension = FilenameUtils.getExtension(info.getFinalFilename()).toLowerCase();
+        String folderPath = getS3FolderPath(extension);
+        String s3Key = folderPath + info.getFinalFilename();
+        String etag = null;
+        if (!info.isInappropriate()) {
+            // The ETag pins the entry to these bytes, a later upload under the same name invalidates it
+            try {
+                etag = s3Client.headObject(HeadObjectRequest.builder().bucket(bucketName).key(s3Key).build()).eTag();
+            } catch (Exception e) {
+                log.warn("Not recording upload {} for deduplication", s3Key, e);
+                return;
+            }
+        }
+        uploadDedupService.record(DedupEntry.builder()
+                .ownerId(info.getOwnerId())
+                .contentHash(info.getContentHash())
+                .etag(etag)
+                .s3Key(s3Key)
+                .url("https://" + cloudFrontUrl + "/" + folderPath + info.getFinalFilename())
+                .moderated(info.isModerated())
+                .inappropriate(info.isInappropriate())
+                .variantUrls(variantUrls)
+                .hlsUrl(toCloudFrontUrl(info.getHlsKey()))
+                .build());
+    }
+
+    private ProcessedFileInfo processFile(File tempFile, String originalFilename, String extension,
+                                          CompletableFuture<PostCount> postCount, ImageType imageType) throws Exception {
         log.info("LOG:: Processing file {} with extension {}", originalFilename, extension);
         ProcessedFileInfo info = new ProcessedFileInfo();
         info.setOriginalFile(tempFile);
@@ -198,29 +743,75 @@ public class S3ServiceImpl implements S3Service {
         if (validateImageVideo.isVideo(extension)) {
             log.info("LOG:: Video detected. Compressing video file {}", originalFilename);
             info.setExtensionType("video");
-            info.setProcessedFile(processVideoFile(tempFile, originalFilename));
-            info.setFinalFilename("compressed_" + originalFilename);
-
-            // Upload the video first
+            // Stops the encodes and uploads that are still running once the video is not wanted any more
+            CompletableFuture<Void> abort = new CompletableFuture<>();
+            // The HLS ladder is encoded next to the MP4, which stays the download and moderation copy
+            String hlsPrefix = HLS_FOLDER + originalFilename + "/";
+            CompletableFuture<String> hlsPackage = startHlsPackage(tempFile, hlsPrefix, abort);
             String folderPath = getS3FolderPath(extension);
-            String s3Key = folderPath + info.getFinalFilename();
-            uploadToS3WithMetadata(info.getFinalFilename(), info.getProcessedFile());
+            boolean moderate = requiresModeration(extension, postCount);
+            // Sampled frames of the original are moderated while it is compressed
+            CompletableFuture<Boolean> keyframeVerdict = moderate
+                    && keyframeModerationService.getMode(imageType) == VideoModerationMode.KEYFRAMES
+                    ? keyframeModerationService.moderate(tempFile, imageType)
+                    : null;
+            // An inappropriate frame aborts right away
+            if (keyframeVerdict != null) {
+                keyframeVerdict.thenAccept(inappropriate -> {
+                    if (inappropriate) {
+                        abort.complete(null);
+                    }
+                });
+            }
+            String s3Key;
+            try {
+                info.setFinalFilename("compressed_" + originalFilename);
 
-            if(postCount.getVideoCount() < videoCount) {
-                // Then check moderation
-                info.setInappropriate(checkVideoModeration(s3Key));
+                // Upload the video first
+                s3Key = folderPath + info.getFinalFilename();
+                try {
+                    processVideoFile(info, tempFile, originalFilename, s3Key, abort);
+                    info.setUploaded(true);
+                } catch (Exception e) {
+                    if (!abort.isDone()) {
+                        if (keyframeVerdict != null) {
+                            // Kills the frame sampling, nothing is left to moderate
+                            keyframeVerdict.cancel(true);
+                        }
+                        throw e;
+                    }
+                    log.info("LOG:: Compression of {} stopped, a sampled frame is inappropriate", originalFilename);
+                }
+
+                if (moderate) {
+                    // Then check moderation
+                    info.setModerated(true);
+                    info.setInappropriate(keyframeVerdict != null
+                            ? awaitVideoModeration(keyframeVerdict, s3Key)
+                            : checkVideoModeration(s3Key));
+                }
+            } catch (Exception e) {
+                discardHlsPackage(hlsPackage, hlsPrefix, abort);
+                cleanupFiles(info.getProcessedFile());
+                throw e;
             }
 
             // If inappropriate, delete the uploaded file
             if (info.isInappropriate()) {
-                deleteExistingObject(s3Key);
+                if (info.isUploaded()) {
+                    deleteObject(s3Key);
+                }
+                discardHlsPackage(hlsPackage, hlsPrefix, abort);
+            } else {
+                info.setHlsKey(awaitHlsPackage(hlsPackage, originalFilename));
             }
         } else if (validateImageVideo.isImage(extension)) {
             info.setExtensionType("image");
             info.setProcessedFile(tempFile);
             info.setFinalFilename(originalFilename);
-            if(postCount.getImageCount() < imageCount){
-                info.setInappropriate(checkImageModeration(info.getProcessedFile()));
+            if(requiresModeration(extension, postCount)){
+                info.setModerated(true);
+                moderateImage(info, getS3FolderPath(extension) + originalFilename);
             }
         } else {
             info.setProcessedFile(tempFile);
@@ -230,25 +821,191 @@ public class S3ServiceImpl implements S3Service {
         return info;
     }
 
-    private File processVideoFile(File tempFile, String originalFilename) throws Exception {
+    /**
+     * Compresses the video and uploads it under {@code s3Key}. With streaming the output of ffmpeg goes
+     * straight into a multipart upload while it is encoded, otherwise it is staged in a temp file first.
+     * Completing {@code abort} stops the encode and fails the upload.
+     */
+    private void processVideoFile(ProcessedFileInfo info, File tempFile, String originalFilename, String s3Key,
+                                  CompletableFuture<?> abort) throws Exception {
         log.info("LOG:: Compressing video file {}", originalFilename);
-        File processedFile = new File(System.getProperty("java.io.tmpdir"), "compressed_" + originalFilename);
-        videoCompressionService.compressVideo(tempFile, processedFile);
-        if (!processedFile.exists()) {
-            throw new IOException("Video compression failed");
+        VideoCompressionResult result;
+        if (videoStreamingEnabled) {
+            // The pipe always carries fragmented MP4, whatever the extension of the upload
+            result = videoCompressionService.compressVideo(tempFile, (content, encode) -> {
+                Map<String, String> metadata = buildMetadata(info.getFinalFilename());
+                metadata.putAll(buildVideoMetadata(encode));
+                s3TransferService.uploadStream(content, s3Key, "video/mp4", metadata);
+            }, abort);
+        } else {
+            // A unique name, concurrent uploads of files with the same name must not share an output
+            File processedFile = Files.createTempFile("compressed_",
+                    "." + FilenameUtils.getExtension(originalFilename)).toFile();
+            info.setProcessedFile(processedFile);
+            result = videoCompressionService.compressVideo(tempFile, processedFile, abort);
+            if (processedFile.length() == 0) {
+                throw new IOException("Video compression failed");
+            }
+            if (abort.isDone()) {
+                throw new IOException("Upload of " + originalFilename + " was aborted");
+            }
+            uploadToS3WithMetadata(info.getFinalFilename(), processedFile, buildVideoMetadata(result));
         }
-        return processedFile;
+        log.info("LOG:: Video {} processed by {} in {} ms", originalFilename, result.getMode(), result.getElapsedMillis());
+        info.setCompression(result);
+    }
+
+    private CompletableFuture<String> startHlsPackage(File tempFile, String hlsPrefix, CompletableFuture<?> abort) {
+        if (!hlsPackagingService.isEnabled()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return hlsPackagingService.packageVideo(tempFile, hlsPrefix, abort);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, videoPackagingExecutor);
+        } catch (TaskRejectedException e) {
+            log.warn("HLS packaging pool is full, {} is only available as MP4", hlsPrefix);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * The master playlist key, or {@code null} when packaging failed; the MP4 is served on its own then.
+     */
+    private String awaitHlsPackage(CompletableFuture<String> hlsPackage, String originalFilename) {
+        try {
+            return hlsPackage.join();
+        } catch (CompletionException e) {
+            log.warn("HLS packaging failed for {}, only the MP4 is available", originalFilename, e.getCause());
+            return null;
+        }
+    }
+
+    private void discardHlsPackage(CompletableFuture<String> hlsPackage, String hlsPrefix, CompletableFuture<Void> abort) {
+        // An encode that is still running is killed and removes its segments itself, a finished package is
+        // removed here
+        abort.complete(null);
+        hlsPackage.whenComplete((masterKey, error) -> {
+            if (masterKey != null) {
+                hlsPackagingService.deletePackage(hlsPrefix);
+            }
+        });
+    }
+
+    /**
+     * Moderates a staged image according to {@code rekognition.image.mode}. In the quarantine modes the image
+     * is already in its final place (and marked as uploaded) once it passes.
+     */
+    private void moderateImage(ProcessedFileInfo info, String s3Key) throws IOException {
+        File file = info.getProcessedFile();
+        String quarantineKey = QUARANTINE_PREFIX + s3Key;
+        switch (imageModerationMode) {
+            case INLINE_BYTES -> info.setInappropriate(checkImageModeration(file));
+            case S3_REFERENCE -> {
+                try {
+                    uploadToQuarantine(file, quarantineKey);
+                    info.setInappropriate(checkImageModeration(quarantineKey));
+                    settleQuarantine(quarantineKey, s3Key, info.isInappropriate());
+                } catch (IOException | RuntimeException e) {
+                    discardStagedUpload(quarantineKey, s3Key);
+                    throw e;
+                }
+                info.setUploaded(true);
+            }
+            case SPECULATIVE -> {
+                try {
+                    CompletableFuture<Void> upload = startQuarantineUpload(file, quarantineKey);
+                    boolean inappropriate;
+                    try {
+                        inappropriate = checkImageModeration(file);
+                    } finally {
+                        awaitQuarantineUpload(upload, quarantineKey);
+                    }
+                    info.setInappropriate(inappropriate);
+                    settleQuarantine(quarantineKey, s3Key, inappropriate);
+                } catch (IOException | RuntimeException e) {
+                    discardStagedUpload(quarantineKey, s3Key);
+                    throw e;
+                }
+                info.setUploaded(true);
+            }
+        }
+    }
+
+    /**
+     * Uploads the quarantine copy on a stage worker while the image is moderated, or on the calling thread
+     * when the stage pool is full.
+     */
+    private CompletableFuture<Void> startQuarantineUpload(File file, String quarantineKey) throws IOException {
+        try {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    uploadToQuarantine(file, quarantineKey);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, uploadStageExecutor);
+        } catch (TaskRejectedException e) {
+            uploadToQuarantine(file, quarantineKey);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private void uploadToQuarantine(File file, String quarantineKey) throws IOException {
+        String filename = FilenameUtils.getName(quarantineKey);
+        s3TransferService.uploadFile(file, quarantineKey, resolveContentType(filename), buildMetadata(filename), false);
+    }
+
+    private void awaitQuarantineUpload(CompletableFuture<Void> upload, String quarantineKey) throws IOException {
+        try {
+            upload.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Quarantine upload interrupted for " + quarantineKey, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Quarantine upload failed for " + quarantineKey, e.getCause());
+        }
+    }
+
+    /**
+     * Promotes a quarantined object to its public key when it passed moderation, and drops it either way.
+     */
+    private void settleQuarantine(String quarantineKey, String s3Key, boolean inappropriate) {
+        if (!inappropriate) {
+            s3Client.copyObject(CopyObjectRequest.builder()
+                    .sourceBucket(bucketName)
+                    .sourceKey(quarantineKey)
+                    .destinationBucket(bucketName)
+                    .destinationKey(s3Key)
+                    .metadataDirective(MetadataDirective.COPY)
+                    .acl(ObjectCannedACL.PUBLIC_READ)
+                    .build());
+            log.info("LOG:: Promoted {} from quarantine", s3Key);
+        }
+        // The public object already exists, so variant generation does not wait for the cleanup
+        deleteObjectAsync(quarantineKey);
     }
 
     private boolean checkImageModeration(File file) throws IOException {
-        byte[] fileBytes = Files.readAllBytes(file.toPath());
-        // Convert to SdkBytes instead of ByteBuffer for AWS SDK v2
-        SdkBytes sdkBytes = SdkBytes.fromByteArray(fileBytes);
-        
-        Image rekognitionImage = Image.builder()
-                .bytes(sdkBytes)
-                .build();
+        // Large photos are sent as a downscaled JPEG proxy rather than the full original
+        return moderationImageProxy.withModerationBytes(file,
+                bytes -> detectInappropriateLabels(Image.builder().bytes(bytes).build()));
+    }
+
+    private boolean checkImageModeration(String s3Key) {
+        return detectInappropriateLabels(Image.builder()
+                .s3Object(S3Object.builder()
+                        .bucket(bucketName)
+                        .name(s3Key)
+                        .build())
+                .build());
+    }
 
+    private boolean detectInappropriateLabels(Image rekognitionImage) {
         DetectModerationLabelsRequest request = DetectModerationLabelsRequest.builder()
                 .image(rekognitionImage)
                 .minConfidence(minConfidence)
@@ -256,45 +1013,44 @@ public class S3ServiceImpl implements S3Service {
 
         DetectModerationLabelsResponse result = rekognitionClient.detectModerationLabels(request);
         return result.moderationLabels().stream()
-                .anyMatch(label -> INAPPROPRIATE_LABELS.contains(label.name()));
+                .anyMatch(label -> ModerationLabels.isInappropriate(label.name()));
     }
 
-    private boolean checkVideoModeration(String s3Key) throws Exception {
-        StartContentModerationRequest request = StartContentModerationRequest.builder()
-                .video(Video.builder()
-                        .s3Object(S3Object.builder()
-                                .bucket(bucketName)
-                                .name(s3Key)
-                                .build())
-                        .build())
-                .minConfidence(minConfidence)
-                .build();
+    private boolean checkVideoModeration(String s3Key) throws IOException {
+        // The shared poller tracks the Rekognition job; this thread only waits for its verdict
+        return awaitVideoModeration(videoModerationService.moderate(s3Key), s3Key);
+    }
 
-        StartContentModerationResponse startResponse = rekognitionClient.startContentModeration(request);
-        String jobId = startResponse.jobId();
-        log.info("LOG:: Started video moderation job {} for object {}", jobId, s3Key);
-
-        GetContentModerationResponse result;
-        do {
-            Thread.sleep(500); // Wait half a second between checks
-            result = rekognitionClient.getContentModeration(
-                    GetContentModerationRequest.builder().jobId(jobId).build());
-            log.debug("Video moderation job status: {}", result.jobStatus());
-        } while (result.jobStatus() == VideoJobStatus.IN_PROGRESS);
-
-        if (result.jobStatus() == VideoJobStatus.SUCCEEDED) {
-            return result.moderationLabels().stream()
-                    .anyMatch(detection -> INAPPROPRIATE_LABELS.contains(
-                            detection.moderationLabel().name()));
-        } else {
-            log.error("Video moderation failed for object {}: {}", s3Key, result.statusMessage());
-            throw new IOException("Video moderation failed: " + result.statusMessage());
+    private boolean awaitVideoModeration(CompletableFuture<Boolean> verdict, String s3Key) throws IOException {
+        try {
+            return verdict.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Video moderation interrupted for object " + s3Key, e);
+        } catch (ExecutionException e) {
+            log.error("Video moderation failed for object {}", s3Key, e.getCause());
+            throw new IOException("Video moderation failed: " + e.getCause().getMessage(), e.getCause());
         }
     }
 
-    private String uploadProcessedFile(ProcessedFileInfo processedInfo, ImageType imageType) throws IOException {
-        uploadToS3WithMetadata(processedInfo.getFinalFilename(), processedInfo.getProcessedFile());
-        return generateImageUrl(processedInfo.getFinalFilename(), imageType);
+    /**
+     * Uploads the file if it is not in the bucket yet and starts variant generation as soon as the object
+     * exists. The returned future completes with the URL to hand back to the client.
+     */
+    private CompletableFuture<String> uploadProcessedFile(ProcessedFileInfo processedInfo, ImageType imageType) throws IOException {
+        // Videos are already in the bucket for moderation, sending them again would double the transfer
+        if (!processedInfo.isUploaded()) {
+            uploadToS3WithMetadata(processedInfo.getFinalFilename(), processedInfo.getProcessedFile());
+        }
+        String extension = FilenameUtils.getExtension(processedInfo.getFinalFilename()).toLowerCase();
+        String originalUrl = "https://" + cloudFrontUrl + "/" + getS3FolderPath(extension) + processedInfo.getFinalFilename();
+        CompletableFuture<ImageProcessingResponseDTO.Urls> variants = validateImageVideo.isImage(extension)
+                ? startVariants(processedInfo, getS3FolderPath(extension) + processedInfo.getFinalFilename(), imageType)
+                : CompletableFuture.completedFuture(null);
+        return variants.thenApply(variantUrls -> {
+            recordUpload(processedInfo, variantUrls);
+            return resolveImageUrl(originalUrl, imageType, variantUrls);
+        });
     }
 
     private String getS3FolderPath(String extension) {
@@ -309,49 +1065,114 @@ public class S3ServiceImpl implements S3Service {
     }
 
     private void uploadToS3WithMetadata(String filename, File file) throws IOException {
+        uploadToS3WithMetadata(filename, file, Map.of());
+    }
+
+    private void uploadToS3WithMetadata(String filename, File file, Map<String, String> extraMetadata) throws IOException {
         String contentType = resolveContentType(filename);
-        long contentLength = Files.size(file.toPath());
 
         // Get the appropriate folder path based on file extension
         String folderPath = getS3FolderPath(FilenameUtils.getExtension(filename).toLowerCase());
         String s3Key = folderPath + filename;
 
+        // Large files are split into parts and sent concurrently by the transfer engine
+        Map<String, String> metadata = buildMetadata(filename);
+        metadata.putAll(extraMetadata);
+        s3TransferService.uploadFile(file, s3Key, contentType, metadata);
+    }
+
+    /**
+     * How the video was produced, kept on the object so encode settings can be compared against the
+     * stored sizes later.
+     */
+    private Map<String, String> buildVideoMetadata(VideoCompressionResult compression) {
+        Map<String, String> metadata = new HashMap<>();
+        if (compression == null) {
+            return metadata;
+        }
+        metadata.put("video-mode", compression.getMode().name().toLowerCase());
+        if (compression.getCrf() != null) {
+            metadata.put("video-crf", String.valueOf(compression.getCrf()));
+            metadata.put("video-maxrate-kbps", String.valueOf(compression.getMaxrateKbps()));
+            metadata.put("video-preset", compression.getPreset());
+        }
+        if (compression.getComplexity() != null) {
+            metadata.put("video-complexity", String.format(Locale.ROOT, "%.3f", compression.getComplexity()));
+        }
+        return metadata;
+    }
+
+    private Map<String, String> buildMetadata(String filename) {
         // Create metadata map for AWS SDK v2
         Map<String, String> metadata = new HashMap<>();
         metadata.put("Title", "File Upload - " + filename);
+        return metadata;
+    }
 
-        PutObjectRequest putRequest = PutObjectRequest.builder()
-                .bucket(bucketName)
-                .key(s3Key)
-                .contentType(contentType)
-                .contentLength(contentLength)
-                .metadata(metadata)
-                .acl(ObjectCannedACL.PUBLIC_READ)
-                .build();
-
-        s3Client.putObject(putRequest, RequestBody.fromFile(file));
-        log.info("LOG:: File uploaded successfully to S3: {}", s3Key);
+    /**
+     * Starts variant generation for an image that is in the bucket under {@code s3Key}. The local engine
+     * renders from the staged file when there is one, so only streamed uploads read the object back; images
+     * it cannot decode (e.g. HEIC) still go to the Lambda. With lazy variants only the one returned for the
+     * image type is rendered here, the others are queued in the background or rendered on first request.
+     */
+    private CompletableFuture<ImageProcessingResponseDTO.Urls> startVariants(ProcessedFileInfo processedInfo, String s3Key,
+                                                                             ImageType imageType) throws IOException {
+        String fileName = processedInfo.getFinalFilename();
+        if (imageVariantEngine == ImageVariantEngine.LAMBDA) {
+            return CompletableFuture.supplyAsync(() -> generateVariants(fileName), uploadStageExecutor);
+        }
+        // The original under this name has just been replaced, variants of an earlier upload must not be served
+        imageVariantService.invalidateVariants(fileName);
+        Set<ImageVariant> inline = lazyVariants
+                ? EnumSet.of(ImageVariant.forImageType(imageType))
+                : EnumSet.allOf(ImageVariant.class);
+        File stagedFile = processedInfo.getProcessedFile();
+        CompletableFuture<ImageProcessingResponseDTO.Urls> variants;
+        try {
+            // The staged file is deleted once this returns, so its bytes are read up front
+            variants = stagedFile != null && stagedFile.exists()
+                    ? imageVariantService.generateVariants(Files.readAllBytes(stagedFile.toPath()), fileName, inline)
+                    : imageVariantService.generateVariants(s3Key, fileName, inline);
+        } catch (TaskRejectedException e) {
+            log.warn("Variant pool is full, falling back to the image processing service for {}", fileName);
+            variants = CompletableFuture.completedFuture(null);
+        }
+        if (lazyVariants && backgroundVariants) {
+            variants = variants.thenApply(urls -> {
+                if (urls != null) {
+                    imageVariantService.scheduleVariants(s3Key, fileName, EnumSet.complementOf(EnumSet.copyOf(inline)));
+                }
+                return urls;
+            });
+        }
+        return variants
+                .exceptionally(error -> null)
+                .thenCompose(urls -> urls != null
+                        ? CompletableFuture.completedFuture(urls)
+                        : CompletableFuture.supplyAsync(() -> generateVariants(fileName), uploadStageExecutor));
     }
 
-    private String generateImageUrl(String fileName, ImageType imageType) {
+    private ImageProcessingResponseDTO.Urls generateVariants(String fileName) {
         String extension = FilenameUtils.getExtension(fileName).toLowerCase();
-        String folderPath = getS3FolderPath(extension);
         if(validateImageVideo.isImage(extension)){
             ImageProcessingResponseDTO imageProcessingResponseDTO = imageProcessingService.processImage(fileName);
             log.info("LOG:: imageProcessingResponseDTO {}", imageProcessingResponseDTO);
-            if(imageProcessingResponseDTO != null && imageProcessingResponseDTO.getStatus().equals("success")){
-                return switch (imageType) {
-                    case SIGNATURE -> imageProcessingResponseDTO.getUrls().getLandscape();
-                    case PROFILE_IMAGE, CLUB_LOGO, COVER_IMAGE, PROFILE_BANNER_IMAGE ->
-                            imageProcessingResponseDTO.getUrls().getProfile();
-                    default -> imageProcessingResponseDTO.getUrls().getStory();
-                };
+            if(imageProcessingResponseDTO != null && "success".equals(imageProcessingResponseDTO.getStatus())){
+                return imageProcessingResponseDTO.getUrls();
             }
         }
-        return "https://" + cloudFrontUrl + "/" + folderPath + fileName;
+        return null;
     }
 
-    private String resolveContentType(String filename) {
+    private String resolveImageUrl(String originalUrl, ImageType imageType, ImageProcessingResponseDTO.Urls variantUrls) {
+        if (variantUrls == null) {
+            return originalUrl;
+        }
+        return ImageVariant.forImageType(imageType).getUrlGetter().apply(variantUrls);
+    }
+
+    @Override
+    public String resolveContentType(String filename) {
         String extension = FilenameUtils.getExtension(filename).toLowerCase();
         return CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
     }
@@ -369,9 +1190,18 @@ public class S3ServiceImpl implements S3Service {
         }
     }
 
+    private String toCloudFrontUrl(String s3Key) {
+        return s3Key == null ? null : "https://" + cloudFrontUrl + "/" + s3Key;
+    }
+
     private CommonResponse buildSuccessResponse(String imageUrl) {
+        return buildSuccessResponse(imageUrl, null);
+    }
+
+    private CommonResponse buildSuccessResponse(String imageUrl, String hlsUrl) {
         ImageDto imageDto = ImageDto.builder()
                 .imageUrl(imageUrl)
+                .hlsUrl(hlsUrl)
                 .build();
         return CommonResponse.builder()
                 .data(imageDto)
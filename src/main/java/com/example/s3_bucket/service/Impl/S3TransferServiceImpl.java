@@ -0,0 +1,449 @@
+package com.example.s3_bucket.service.Impl;
+
+import com.example.s3_bucket.dto.TransferResult;
+import com.example.s3_bucket.service.S3TransferService;
+import com.example.s3_bucket.util.ContentHash;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.PooledDataBuffer;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Multipart transfer engine on top of {@link S3AsyncClient}.
+ * Large objects are split into {@code part-size} parts and up to {@code parallelism} parts per object
+ * are in flight at once. Each part is retried on its own, so a single failed part does not restart the
+ * whole object. Stream uploads only hold {@code parallelism} part buffers in memory; file uploads read
+ * each part straight from disk. Reactive uploads apply the same bound through demand on the content publisher.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class S3TransferServiceImpl implements S3TransferService {
+
+    private static final long MIN_PART_SIZE = DataSize.ofMegabytes(5).toBytes();
+
+    private final S3AsyncClient s3AsyncClient;
+
+    @Value("${api.class.s3.image.bucket-name}")
+    private String bucketName;
+
+    @Value("${s3.transfer.part-size:8MB}")
+    private DataSize partSize;
+
+    @Value("${s3.transfer.multipart-threshold:16MB}")
+    private DataSize multipartThreshold;
+
+    @Value("${s3.transfer.parallelism:8}")
+    private int parallelism;
+
+    @Value("${s3.transfer.part-retries:3}")
+    private int partRetries;
+
+    @Value("${s3.transfer.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+
+    @PostConstruct
+    private void validateConfiguration() {
+        if (partSize.toBytes() < MIN_PART_SIZE) {
+            throw new IllegalStateException("s3.transfer.part-size must be at least 5MB, got " + partSize);
+        }
+        log.info("LOG:: S3 transfer engine using {} parts with parallelism {}", partSize, parallelism);
+    }
+
+    @Override
+    public TransferResult uploadStream(InputStream source, String key, String contentType,
+                                       Map<String, String> metadata, boolean publicRead) throws IOException {
+        // The content hash is computed on the fly so callers can deduplicate without re-reading the object
+        MessageDigest digest = ContentHash.newDigest();
+        InputStream inputStream = new DigestInputStream(source, digest);
+        int bufferSize = Math.toIntExact(partSize.toBytes());
+        byte[] firstPart = new byte[bufferSize];
+        int firstLength = inputStream.readNBytes(firstPart, 0, bufferSize);
+
+        if (firstLength < bufferSize) {
+            // Whole object fits in one part, a plain PUT is cheaper than a multipart upload
+            ByteBuffer body = ByteBuffer.wrap(firstPart, 0, firstLength);
+            await(putObject(key, contentType, metadata, publicRead, firstLength,
+                    () -> AsyncRequestBody.fromRemainingByteBufferUnsafe(body.duplicate())), key);
+            return TransferResult.builder().key(key).contentLength(firstLength).partCount(1)
+                    .contentHash(ContentHash.toHex(digest)).build();
+        }
+
+        String uploadId = createMultipartUpload(key, contentType, metadata, publicRead);
+        Semaphore inFlight = new Semaphore(parallelism);
+        List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+        long totalLength = 0;
+        try {
+            byte[] buffer = firstPart;
+            int length = firstLength;
+            int partNumber = 1;
+            while (length > 0) {
+                totalLength += length;
+                ByteBuffer body = ByteBuffer.wrap(buffer, 0, length);
+                parts.add(submitPart(key, uploadId, partNumber++, length, inFlight,
+                        () -> AsyncRequestBody.fromRemainingByteBufferUnsafe(body.duplicate())));
+                failFast(parts, key);
+
+                // Wait for a free slot before allocating the next buffer so memory stays bounded
+                inFlight.acquire();
+                inFlight.release();
+                buffer = new byte[bufferSize];
+                length = inputStream.readNBytes(buffer, 0, bufferSize);
+            }
+            int partCount = completeMultipartUpload(key, uploadId, parts);
+            return TransferResult.builder().key(key).contentLength(totalLength).partCount(partCount)
+                    .contentHash(ContentHash.toHex(digest)).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(key, uploadId, parts);
+            throw new IOException("Multipart upload interrupted for " + key, e);
+        } catch (IOException | RuntimeException e) {
+            abort(key, uploadId, parts);
+            throw e;
+        }
+    }
+
+    @Override
+    public TransferResult uploadFile(File file, String key, String contentType,
+                                     Map<String, String> metadata, boolean publicRead) throws IOException {
+        Path path = file.toPath();
+        long contentLength = Files.size(path);
+
+        if (contentLength < multipartThreshold.toBytes()) {
+            await(putObject(key, contentType, metadata, publicRead, contentLength, () -> AsyncRequestBody.fromFile(path)), key);
+            return TransferResult.builder().key(key).contentLength(contentLength).partCount(1).build();
+        }
+
+        String uploadId = createMultipartUpload(key, contentType, metadata, publicRead);
+        Semaphore inFlight = new Semaphore(parallelism);
+        List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+        try {
+            long size = partSize.toBytes();
+            int partNumber = 1;
+            for (long position = 0; position < contentLength; position += size) {
+                long offset = position;
+                long length = Math.min(size, contentLength - position);
+                parts.add(submitPart(key, uploadId, partNumber++, length, inFlight,
+                        () -> AsyncRequestBody.fromFile(builder -> builder
+                                .path(path)
+                                .position(offset)
+                                .numBytesToRead(length))));
+                failFast(parts, key);
+            }
+            int partCount = completeMultipartUpload(key, uploadId, parts);
+            return TransferResult.builder().key(key).contentLength(contentLength).partCount(partCount).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(key, uploadId, parts);
+            throw new IOException("Multipart upload interrupted for " + key, e);
+        } catch (IOException | RuntimeException e) {
+            abort(key, uploadId, parts);
+            throw e;
+        }
+    }
+
+    @Override
+    public Mono<TransferResult> uploadContent(Flux<DataBuffer> content, String key, String contentType,
+                                              Map<String, String> metadata, boolean publicRead) {
+        return Mono.defer(() -> {
+            PartAssembler assembler = new PartAssembler(Math.toIntExact(partSize.toBytes()));
+            // A small prefetch keeps the socket paused while every part slot is busy
+            Flux<PartBuffer> parts = content
+                    .concatMapIterable(assembler::append, 4)
+                    // Buffers still prefetched when the client goes away or the upload is cancelled
+                    .doOnDiscard(PooledDataBuffer.class, DataBufferUtils::release)
+                    .concatWith(Mono.fromSupplier(assembler::finish));
+
+            return parts.switchOnFirst((first, all) -> {
+                if (first.isOnError()) {
+                    return Mono.<TransferResult>error(first.getThrowable());
+                }
+                PartBuffer firstPart = first.get();
+                if (firstPart != null && firstPart.last()) {
+                    // Whole object fits in one part, a plain PUT is cheaper than a multipart upload
+                    return all.then(Mono.fromFuture(() -> putObject(key, contentType, metadata, publicRead,
+                                    firstPart.length(), firstPart::body)))
+                            .map(response -> TransferResult.builder().key(key).contentLength(firstPart.length())
+                                    .partCount(1).contentHash(assembler.contentHash()).build());
+                }
+                return Mono.fromFuture(() -> startMultipartUpload(key, contentType, metadata, publicRead))
+                        .flatMap(uploadId -> all
+                                .filter(part -> part.length() > 0)
+                                .index()
+                                .flatMap(indexed -> Mono.fromFuture(() -> uploadPart(key, uploadId,
+                                        Math.toIntExact(indexed.getT1() + 1), indexed.getT2().length(),
+                                        indexed.getT2()::body)), parallelism)
+                                .collectList()
+                                .flatMap(completedParts -> Mono.fromFuture(() ->
+                                        finishMultipartUpload(key, uploadId, completedParts)))
+                                .map(partCount -> TransferResult.builder().key(key)
+                                        .contentLength(assembler.totalLength()).partCount(partCount)
+                                        .contentHash(assembler.contentHash()).build())
+                                .onErrorResume(error -> Mono.fromFuture(() -> abortAsync(key, uploadId))
+                                        .then(Mono.error(error)))
+                                .doOnCancel(() -> abortAsync(key, uploadId)));
+            }).single();
+        });
+    }
+
+    @Override
+    public CompletableFuture<TransferResult> uploadBytes(byte[] content, String key, String contentType,
+                                                         Map<String, String> metadata, boolean publicRead) {
+        return putObject(key, contentType, metadata, publicRead, content.length,
+                () -> AsyncRequestBody.fromBytesUnsafe(content))
+                .thenApply(response -> TransferResult.builder().key(key).contentLength(content.length).partCount(1).build());
+    }
+
+    private CompletableFuture<PutObjectResponse> putObject(String key, String contentType, Map<String, String> metadata,
+                                                           boolean publicRead, long contentLength,
+                                                           Supplier<AsyncRequestBody> body) {
+        PutObjectRequest putRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(contentLength)
+                .metadata(metadata)
+                .acl(publicRead ? ObjectCannedACL.PUBLIC_READ : ObjectCannedACL.PRIVATE)
+                .build();
+        return withRetry(() -> s3AsyncClient.putObject(putRequest, body.get()), key, 1, 1)
+                .whenComplete((response, error) -> {
+                    if (error == null) {
+                        log.info("LOG:: File uploaded successfully to S3: {}", key);
+                    }
+                });
+    }
+
+    private String createMultipartUpload(String key, String contentType, Map<String, String> metadata,
+                                         boolean publicRead) throws IOException {
+        return await(startMultipartUpload(key, contentType, metadata, publicRead), key);
+    }
+
+    private CompletableFuture<String> startMultipartUpload(String key, String contentType, Map<String, String> metadata,
+                                                           boolean publicRead) {
+        return s3AsyncClient.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentType(contentType)
+                        .metadata(metadata)
+                        .acl(publicRead ? ObjectCannedACL.PUBLIC_READ : ObjectCannedACL.PRIVATE)
+                        .build())
+                .thenApply(response -> {
+                    log.info("LOG:: Started multipart upload {} for {}", response.uploadId(), key);
+                    return response.uploadId();
+                });
+    }
+
+    private CompletableFuture<CompletedPart> submitPart(String key, String uploadId, int partNumber, long length,
+                                                        Semaphore inFlight, Supplier<AsyncRequestBody> body)
+            throws InterruptedException {
+        inFlight.acquire();
+        return uploadPart(key, uploadId, partNumber, length, body)
+                .whenComplete((part, error) -> inFlight.release());
+    }
+
+    private CompletableFuture<CompletedPart> uploadPart(String key, String uploadId, int partNumber, long length,
+                                                        Supplier<AsyncRequestBody> body) {
+        UploadPartRequest request = UploadPartRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength(length)
+                .build();
+        return withRetry(() -> s3AsyncClient.uploadPart(request, body.get()), key, partNumber, 1)
+                .thenApply(response -> {
+                    log.debug("Uploaded part {} of {} ({} bytes)", partNumber, key, length);
+                    return CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build();
+                });
+    }
+
+    /**
+     * Runs the request again on a retryable failure with a linear backoff, up to {@code part-retries} extra
+     * attempts. The body supplier is invoked per attempt so each retry resends the full part.
+     */
+    private <T> CompletableFuture<T> withRetry(Supplier<CompletableFuture<T>> request, String key, int partNumber, int attempt) {
+        return request.get()
+                .handle((response, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    if (attempt > partRetries || !isRetryable(error)) {
+                        return CompletableFuture.<T>failedFuture(error);
+                    }
+                    log.warn("Part {} of {} failed on attempt {}, retrying: {}", partNumber, key, attempt, error.getMessage());
+                    Executor delayed = CompletableFuture.delayedExecutor(retryBackoffMs * attempt, TimeUnit.MILLISECONDS);
+                    return CompletableFuture.supplyAsync(() -> null, delayed)
+                            .thenCompose(ignored -> withRetry(request, key, partNumber, attempt + 1));
+                })
+                .thenCompose(future -> future);
+    }
+
+    /**
+     * Server errors, throttling and failures to reach S3. Client errors such as 403 or {@code NoSuchUpload}
+     * after an abort fail the same way again.
+     */
+    private static boolean isRetryable(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof SdkServiceException service) {
+            return service.statusCode() >= 500 || service.isThrottlingException();
+        }
+        if (cause instanceof SdkClientException client) {
+            return client.retryable() || client.getCause() instanceof IOException;
+        }
+        return cause instanceof IOException;
+    }
+
+    private int completeMultipartUpload(String key, String uploadId, List<CompletableFuture<CompletedPart>> parts)
+            throws IOException {
+        await(CompletableFuture.allOf(parts.toArray(new CompletableFuture[0])), key);
+        List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+        parts.forEach(part -> completedParts.add(part.join()));
+        return await(finishMultipartUpload(key, uploadId, completedParts), key);
+    }
+
+    private CompletableFuture<Integer> finishMultipartUpload(String key, String uploadId, List<CompletedPart> completedParts) {
+        List<CompletedPart> sortedParts = completedParts.stream()
+                .sorted(Comparator.comparing(CompletedPart::partNumber))
+                .toList();
+        return s3AsyncClient.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(sortedParts).build())
+                        .build())
+                .thenApply(response -> {
+                    log.info("LOG:: Completed multipart upload {} for {} ({} parts)", uploadId, key, sortedParts.size());
+                    return sortedParts.size();
+                });
+    }
+
+    private void failFast(List<CompletableFuture<CompletedPart>> parts, String key) throws IOException {
+        for (CompletableFuture<CompletedPart> part : parts) {
+            if (part.isCompletedExceptionally()) {
+                await(part, key);
+            }
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future, String key) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Upload interrupted for " + key, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Upload failed for " + key, e.getCause());
+        }
+    }
+
+    private void abort(String key, String uploadId, List<CompletableFuture<CompletedPart>> parts) {
+        parts.forEach(part -> part.cancel(true));
+        abortAsync(key, uploadId).join();
+    }
+
+    /**
+     * Aborts the multipart upload so S3 drops the parts already stored. The returned future never fails.
+     */
+    private CompletableFuture<Void> abortAsync(String key, String uploadId) {
+        return s3AsyncClient.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .build())
+                .handle((response, error) -> {
+                    if (error == null) {
+                        log.warn("LOG:: Aborted multipart upload {} for {}", uploadId, key);
+                    } else {
+                        log.error("Failed to abort multipart upload {} for {}", uploadId, key, error);
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Copies incoming buffers into part-sized arrays and hashes the bytes on the way through.
+     * A subscription owns one assembler, so it is never used from two threads at once.
+     */
+    static final class PartAssembler {
+        private final int partSize;
+        private final MessageDigest digest = ContentHash.newDigest();
+        private byte[] current;
+        private int position;
+        private long totalLength;
+
+        PartAssembler(int partSize) {
+            this.partSize = partSize;
+        }
+
+        List<PartBuffer> append(DataBuffer buffer) {
+            try {
+                List<PartBuffer> fullParts = new ArrayList<>(1);
+                while (buffer.readableByteCount() > 0) {
+                    if (current == null) {
+                        current = new byte[partSize];
+                    }
+                    int length = Math.min(buffer.readableByteCount(), partSize - position);
+                    buffer.read(current, position, length);
+                    digest.update(current, position, length);
+                    position += length;
+                    totalLength += length;
+                    if (position == partSize) {
+                        fullParts.add(new PartBuffer(current, position, false));
+                        current = null;
+                        position = 0;
+                    }
+                }
+                return fullParts;
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        }
+
+        PartBuffer finish() {
+            PartBuffer last = new PartBuffer(current == null ? new byte[0] : current, position, true);
+            current = null;
+            return last;
+        }
+
+        long totalLength() {
+            return totalLength;
+        }
+
+        String contentHash() {
+            return ContentHash.toHex(digest);
+        }
+    }
+
+    record PartBuffer(byte[] bytes, int length, boolean last) {
+        AsyncRequestBody body() {
+            return AsyncRequestBody.fromRemainingByteBufferUnsafe(ByteBuffer.wrap(bytes, 0, length));
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.s3_bucket.service.Impl;
+
+import com.example.s3_bucket.exceptions.TranscodeRejectedException;
+import com.example.s3_bucket.service.TranscodeScheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps concurrent ffmpeg encodes at a fixed number of slots, by default one per {@code threads-per-encode}
+ * cores, so parallel uploads queue for a slot instead of oversubscribing the CPU. Slots are handed out in
+ * arrival order. The queue bound is enforced when a video is admitted: every admitted upload holds a ticket
+ * for each encode it will queue, the MP4 and, with HLS enabled, the ladder, until it has finished. Once the
+ * tickets fill all slots plus {@code queue-capacity} further encodes, uploads are refused with a retry hint
+ * based on the average encode time. Tickets are taken before a video is staged, so uploads still receiving
+ * their bytes count as well.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TranscodeSchedulerImpl implements TranscodeScheduler {
+
+    private static final String METRIC_PREFIX = "video.transcode";
+    private static final long MAX_RETRY_AFTER_SECONDS = 600;
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private Semaphore slots;
+    private int slotCount;
+    private Timer waitTime;
+    private Timer encodeTime;
+    private Counter rejected;
+
+    @Value("${video.transcode.slots:0}")
+    private int configuredSlots;
+
+    @Getter
+    @Value("${video.transcode.threads-per-encode:2}")
+    private int threadsPerEncode;
+
+    @Value("${video.transcode.queue-capacity:20}")
+    private int queueCapacity;
+
+    @Value("${video.transcode.retry-after-seconds:30}")
+    private long defaultRetryAfterSeconds;
+
+    // The ladder is a second encode of every video
+    @Value("${video.hls.enabled:false}")
+    private boolean hlsEnabled;
+
+    @PostConstruct
+    void init() {
+        slotCount = configuredSlots > 0
+                ? configuredSlots
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, threadsPerEncode));
+        slots = new Semaphore(slotCount, true);
+        log.info("LOG:: Transcoding with {} slots of {} threads, queue capacity {}", slotCount, threadsPerEncode, queueCapacity);
+
+        Gauge.builder(METRIC_PREFIX + ".admitted", admitted, AtomicInteger::get)
+                .description("Encodes reserved by admitted videos, from admission until their upload finished")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".queued", queued, AtomicInteger::get)
+                .description("Encodes waiting for a slot")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".active", active, AtomicInteger::get)
+                .description("Encodes running")
+                .register(meterRegistry);
+        waitTime = Timer.builder(METRIC_PREFIX + ".wait")
+                .description("Time an encode waited for a slot")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        encodeTime = Timer.builder(METRIC_PREFIX + ".duration")
+                .description("Time an encode held its slot")
+                .register(meterRegistry);
+        rejected = Counter.builder(METRIC_PREFIX + ".rejected")
+                .description("Videos refused because the transcode queue was full")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Ticket admit() {
+        int limit = slotCount + queueCapacity;
+        int encodes = hlsEnabled ? 2 : 1;
+        // Checked and taken in one step, so concurrent admissions can never overshoot the limit. An idle
+        // scheduler always takes a video, even when its encodes alone exceed a very small limit
+        int reserved = admitted.getAndUpdate(current -> fits(current, encodes, limit) ? current + encodes : current);
+        if (!fits(reserved, encodes, limit)) {
+            rejected.increment();
+            long retryAfter = retryAfterSeconds();
+            log.warn("Transcode queue is full ({} encodes admitted), asking the client to retry in {}s", reserved, retryAfter);
+            throw new TranscodeRejectedException("Video processing is busy, retry later", retryAfter);
+        }
+        AtomicBoolean closed = new AtomicBoolean();
+        return () -> {
+            if (closed.compareAndSet(false, true)) {
+                admitted.addAndGet(-encodes);
+            }
+        };
+    }
+
+    private static boolean fits(int reserved, int encodes, int limit) {
+        return reserved == 0 || reserved + encodes <= limit;
+    }
+
+    @Override
+    public void execute(Encode encode) throws IOException {
+        long enqueuedAt = System.nanoTime();
+        queued.incrementAndGet();
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a transcode slot", e);
+        } finally {
+            queued.decrementAndGet();
+        }
+        long startedAt = System.nanoTime();
+        waitTime.record(startedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+        active.incrementAndGet();
+        try {
+            encode.run();
+        } finally {
+            active.decrementAndGet();
+            slots.release();
+            encodeTime.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Time until the encodes ahead have drained through the slots, from the average encode time.
+     */
+    private long retryAfterSeconds() {
+        if (encodeTime.count() == 0) {
+            return defaultRetryAfterSeconds;
+        }
+        double rounds = Math.ceil((double) admitted.get() / slotCount);
+        long estimate = (long) Math.ceil(encodeTime.mean(TimeUnit.SECONDS) * rounds);
+        return Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, estimate));
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.s3_bucket.service.Impl;
+
+import com.example.s3_bucket.dto.DedupEntry;
+import com.example.s3_bucket.service.UploadDedupService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Content-addressed index of processed uploads (uploader and SHA-256 of the original bytes to S3 key, moderation
+ * verdict and variant URLs). The index is an LRU map capped at {@code upload.dedup.max-entries}. Every change is
+ * appended to a JSON-lines journal that is replayed on startup and compacted once it grows to twice the
+ * live entry count.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UploadDedupServiceImpl implements UploadDedupService {
+
+    private final ObjectMapper objectMapper;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Value("${upload.dedup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${upload.dedup.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${upload.dedup.index-file:data/upload-dedup-index.jsonl}")
+    private String indexFile;
+
+    private Map<String, DedupEntry> index;
+    private BufferedWriter journal;
+    private long journalLines;
+
+    @PostConstruct
+    private void load() throws IOException {
+        this.index = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DedupEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        if (!enabled) {
+            return;
+        }
+
+        Path path = Paths.get(indexFile);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        if (Files.exists(path)) {
+            try (var lines = Files.lines(path, StandardCharsets.UTF_8)) {
+                lines.forEach(this::replay);
+            }
+        }
+        openJournal(path);
+        log.info("LOG:: Loaded {} upload dedup entries from {}", index.size(), path);
+    }
+
+    @PreDestroy
+    private void close() {
+        lock.lock();
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close upload dedup journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public Optional<DedupEntry> find(String ownerId, String contentHash) {
+        if (!enabled || ownerId == null || contentHash == null) {
+            return Optional.empty();
+        }
+        lock.lock();
+        try {
+            return Optional.ofNullable(index.get(indexKey(ownerId, contentHash)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void record(DedupEntry entry) {
+        if (!enabled || entry.getOwnerId() == null || entry.getContentHash() == null) {
+            return;
+        }
+        entry.setRecordedAt(System.currentTimeMillis());
+        lock.lock();
+        try {
+            index.put(indexKey(entry.getOwnerId(), entry.getContentHash()), entry);
+            append(objectMapper.writeValueAsString(entry));
+        } catch (IOException e) {
+            log.warn("Failed to persist upload dedup entry {}", entry.getContentHash(), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void evict(String ownerId, String contentHash) {
+        if (!enabled || ownerId == null || contentHash == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (index.remove(indexKey(ownerId, contentHash)) != null) {
+                // A journal line with only the owner and hash marks the entry as removed
+                append(objectMapper.writeValueAsString(DedupEntry.builder()
+                        .ownerId(ownerId)
+                        .contentHash(contentHash)
+                        .build()));
+            }
+        } catch (IOException e) {
+            log.warn("Failed to persist upload dedup eviction {}", contentHash, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void replay(String line) {
+        try {
+            DedupEntry entry = objectMapper.readValue(line, DedupEntry.class);
+            journalLines++;
+            if (entry.getOwnerId() == null || entry.getContentHash() == null) {
+                // Entries from before per-user scoping cannot be attributed and are dropped on the next compaction
+                return;
+            }
+            String key = indexKey(entry.getOwnerId(), entry.getContentHash());
+            if (entry.getS3Key() == null) {
+                index.remove(key);
+            } else {
+                index.put(key, entry);
+            }
+        } catch (IOException e) {
+            log.warn("Skipping corrupt upload dedup journal line");
+        }
+    }
+
+    private static String indexKey(String ownerId, String contentHash) {
+        return ownerId + ":" + contentHash;
+    }
+
+    private void append(String line) throws IOException {
+        journal.write(line);
+        journal.newLine();
+        journal.flush();
+        if (++journalLines > 2L * Math.max(index.size(), 1000)) {
+            compact();
+        }
+    }
+
+    private void openJournal(Path path) throws IOException {
+        this.journal = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Rewrites the journal with the live entries only. A failed compaction keeps the old journal open for
+     * appends and is not tried again until the journal has grown by as much once more.
+     */
+    private void compact() {
+        Path path = Paths.get(indexFile);
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        List<DedupEntry> live = List.copyOf(index.values());
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+                for (DedupEntry entry : live) {
+                    writer.write(objectMapper.writeValueAsString(entry));
+                    writer.newLine();
+                }
+            }
+            journal.close();
+            try {
+                Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                // The compacted journal after a move, the old one otherwise
+                openJournal(path);
+            }
+            log.info("LOG:: Compacted upload dedup journal to {} entries", live.size());
+        } catch (IOException e) {
+            log.warn("Failed to compact upload dedup journal, appending to the old one", e);
+            try {
+                Files.deleteIfExists(compacted);
+            } catch (IOException ignored) {
+                // Overwritten by the next compaction
+            }
+        } finally {
+            journalLines = live.size();
+        }
+    }
+}
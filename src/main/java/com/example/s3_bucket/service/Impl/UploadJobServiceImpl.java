@@ -0,0 +1,161 @@
+package com.example.s3_bucket.service.Impl;
+
+import com.example.s3_bucket.dto.CommonResponse;
+import com.example.s3_bucket.dto.ImageDto;
+import com.example.s3_bucket.dto.UploadJobDto;
+import com.example.s3_bucket.enums.ImageType;
+import com.example.s3_bucket.enums.JobStatus;
+import com.example.s3_bucket.enums.StatusType;
+import com.example.s3_bucket.service.S3Service;
+import com.example.s3_bucket.service.TranscodeScheduler;
+import com.example.s3_bucket.service.UploadJobService;
+import com.example.s3_bucket.service.UserService;
+import com.spordee.user.dto.request.PostCount;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs uploads (mainly videos) on a background worker pool so the request thread is released as soon as
+ * the file is received. Job state is kept in memory and evicted once {@code video.jobs.retention-minutes}
+ * have passed since the job finished.
+ */
+@Slf4j
+@Service
+public class UploadJobServiceImpl implements UploadJobService {
+
+    private final S3Service s3Service;
+    private final UserService userService;
+    private final ThreadPoolTaskExecutor videoJobExecutor;
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+
+    @Value("${video.jobs.retention-minutes:60}")
+    private long retentionMinutes;
+
+    public UploadJobServiceImpl(S3Service s3Service, UserService userService,
+                                @Qualifier("videoJobExecutor") ThreadPoolTaskExecutor videoJobExecutor) {
+        this.s3Service = s3Service;
+        this.userService = userService;
+        this.videoJobExecutor = videoJobExecutor;
+    }
+
+    @Override
+    public UploadJobDto submit(MultipartFile multipartFile, String authUserId, String token, ImageType imageType) throws IOException {
+        String originalFilename = multipartFile.getOriginalFilename();
+        if (originalFilename == null || originalFilename.isEmpty()) {
+            throw new IllegalArgumentException("Original filename is missing");
+        }
+
+        // The transcode queue place is held from submission until the job has finished
+        TranscodeScheduler.Ticket ticket = s3Service.admitVideo(originalFilename);
+        Path tempFilePath = null;
+        UploadJob job = new UploadJob(UUID.randomUUID().toString(), authUserId);
+        try {
+            // The caller's token may have expired by the time a queued job runs, so the post count is resolved now
+            PostCount postCount = userService.getPostCount(authUserId, token);
+
+            // The container deletes multipart parts when the request ends, so the job works on its own copy
+            tempFilePath = Files.createTempFile("job", originalFilename);
+            File tempFile = tempFilePath.toFile();
+            multipartFile.transferTo(tempFile);
+
+            jobs.put(job.jobId, job);
+            videoJobExecutor.execute(() -> run(job, tempFile, originalFilename, postCount, imageType, ticket));
+        } catch (IOException | RuntimeException e) {
+            jobs.remove(job.jobId);
+            if (tempFilePath != null) {
+                Files.deleteIfExists(tempFilePath);
+            }
+            ticket.close();
+            throw e;
+        }
+        log.info("LOG:: Queued upload job {} for file {}", job.jobId, originalFilename);
+        return job.toDto();
+    }
+
+    @Override
+    public Optional<UploadJobDto> getJob(String jobId, String authUserId) {
+        return Optional.ofNullable(jobs.get(jobId))
+                .filter(job -> job.authUserId.equals(authUserId))
+                .map(UploadJob::toDto);
+    }
+
+    private void run(UploadJob job, File tempFile, String originalFilename, PostCount postCount, ImageType imageType,
+                     TranscodeScheduler.Ticket ticket) {
+        job.update(JobStatus.RUNNING, null, null);
+        log.info("LOG:: Running upload job {}", job.jobId);
+        try {
+            CommonResponse response = s3Service.uploadStagedFile(tempFile, originalFilename, job.authUserId, postCount, imageType);
+            if (response.getStatus() == StatusType.STATUS_SUCCESS && response.getData() instanceof ImageDto imageDto) {
+                job.update(JobStatus.SUCCEEDED, imageDto, response.getMeta().getDescription());
+            } else {
+                String message = response.getData() instanceof String data ? data : response.getMeta().getDescription();
+                job.update(JobStatus.FAILED, null, message);
+            }
+        } catch (Exception e) {
+            log.error("Upload job {} failed", job.jobId, e);
+            job.update(JobStatus.FAILED, null, "File upload failed: " + e.getMessage());
+        } finally {
+            ticket.close();
+            log.info("LOG:: Upload job {} finished with status {}", job.jobId, job.status);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${video.jobs.cleanup-interval-ms:60000}")
+    public void evictFinishedJobs() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(retentionMinutes));
+        jobs.values().removeIf(job -> job.isFinished() && job.updatedAt.isBefore(cutoff));
+    }
+
+    private static class UploadJob {
+        private final String jobId;
+        private final String authUserId;
+        private final Instant createdAt = Instant.now();
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile ImageDto result;
+        private volatile String message;
+        private volatile Instant updatedAt = createdAt;
+
+        UploadJob(String jobId, String authUserId) {
+            this.jobId = jobId;
+            this.authUserId = authUserId;
+        }
+
+        void update(JobStatus status, ImageDto result, String message) {
+            this.result = result;
+            this.message = message;
+            this.updatedAt = Instant.now();
+            this.status = status;
+        }
+
+        boolean isFinished() {
+            return status == JobStatus.SUCCEEDED || status == JobStatus.FAILED;
+        }
+
+        UploadJobDto toDto() {
+            return UploadJobDto.builder()
+                    .jobId(jobId)
+                    .status(status)
+                    .result(result)
+                    .message(message)
+                    .createdAt(createdAt)
+                    .updatedAt(updatedAt)
+                    .build();
+        }
+    }
+}
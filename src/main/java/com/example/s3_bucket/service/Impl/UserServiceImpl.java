@@ -3,7 +3,15 @@ package com.example.s3_bucket.service.Impl;
 import com.example.s3_bucket.exceptions.ExternalServiceException;
 import com.example.s3_bucket.service.UserService;
 import com.example.s3_bucket.annotation.TrackExecutionTime;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.spordee.user.dto.request.PostCount;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,24 +19,87 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Implementation of UserService for managing user-related operations.
  * Handles communication with external user service for post-count information.
+ * Post counts are cached per user and incremented locally after each upload; entries older than
+ * {@code reconcile-after-seconds} are refreshed from the user service in the background. Concurrent lookups
+ * for the same user, e.g. the files of a multi-photo post, share a single in-flight call.
  */
 @Slf4j
 @Service
 public class UserServiceImpl implements UserService {
 
+    private static final int RECONCILE_CONCURRENCY = 8;
+
     private final WebClient webClient;
+    private final MeterRegistry meterRegistry;
+    private final AtomicBoolean reconciling = new AtomicBoolean();
+    private final Map<String, CompletableFuture<PostCount>> inFlight = new ConcurrentHashMap<>();
+    private final Counter issuedLookups;
+    private final Counter coalescedLookups;
+    private Cache<String, CachedPostCount> postCounts;
+
     @Value("${service.method.get.user}") private String userUrl;
+    @Value("${service.post-count.cache.enabled:true}") private boolean cacheEnabled;
+    @Value("${service.post-count.cache.max-size:10000}") private long cacheMaxSize;
+    @Value("${service.post-count.cache.ttl-minutes:10}") private long cacheTtlMinutes;
+    @Value("${service.post-count.cache.reconcile-after-seconds:60}") private long reconcileAfterSeconds;
 
-    public UserServiceImpl(@Qualifier("userWebClient") WebClient webClient) {
+    public UserServiceImpl(@Qualifier("userWebClient") WebClient webClient, MeterRegistry meterRegistry) {
         this.webClient = webClient;
+        this.meterRegistry = meterRegistry;
+        this.issuedLookups = Counter.builder("user.post-count.lookups")
+                .description("Post count lookups sent to the user service")
+                .tag("outcome", "issued")
+                .register(meterRegistry);
+        this.coalescedLookups = Counter.builder("user.post-count.lookups")
+                .description("Post count lookups that joined a call already in flight")
+                .tag("outcome", "coalesced")
+                .register(meterRegistry);
+        Gauge.builder("user.post-count.in-flight", inFlight, Map::size)
+                .description("Users with a post count lookup in flight")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void initCache() {
+        long ttlNanos = Duration.ofMinutes(cacheTtlMinutes).toNanos();
+        postCounts = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, CachedPostCount>() {
+                    // Local increments do not extend the lifetime, only a fresh count from the user service does
+                    @Override
+                    public long expireAfterCreate(String key, CachedPostCount value, long currentTime) {
+                        return Math.max(0, ttlNanos - (currentTime - value.fetchedAtNanos()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedPostCount value, long currentTime, long currentDuration) {
+                        return Math.max(0, ttlNanos - (currentTime - value.fetchedAtNanos()));
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedPostCount value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, postCounts, "user.post-count");
     }
 
     /**
@@ -47,11 +118,89 @@ public class UserServiceImpl implements UserService {
             return createDefaultPostCount(authUserId);
         }
 
-        return callExternalServiceWithGet(createPostCountRequest(authUserId), token)
+        if (cacheEnabled) {
+            // The latest token is kept so the background refresh does not run with an expired one
+            CachedPostCount cached = postCounts.asMap().computeIfPresent(authUserId,
+                    (key, entry) -> new CachedPostCount(entry.postCount(), token, entry.fetchedAtNanos()));
+            if (cached != null) {
+                return copy(cached.postCount());
+            }
+        }
+
+        return copy(lookupPostCount(authUserId, token).join());
+    }
+
+    /**
+     * Single-flight lookup: the first caller for a user issues the request, callers arriving while it is in
+     * flight wait for the same result. The future never completes exceptionally.
+     */
+    private CompletableFuture<PostCount> lookupPostCount(String authUserId, String token) {
+        CompletableFuture<PostCount> lookup = new CompletableFuture<>();
+        CompletableFuture<PostCount> existing = inFlight.putIfAbsent(authUserId, lookup);
+        if (existing != null) {
+            coalescedLookups.increment();
+            return existing;
+        }
+        issuedLookups.increment();
+
+        // Failed lookups fall back to zero counts, which are not cached so the next upload asks again
+        callExternalServiceWithGet(createPostCountRequest(authUserId), token)
                 .doOnSuccess(count -> log.info("Successfully retrieved post count for user: {}", authUserId))
                 .doOnError(error -> log.error("Error retrieving post count for user: {}", authUserId, error))
-                .onErrorReturn(createDefaultPostCount(authUserId))
-                .block();
+                .doOnNext(count -> {
+                    if (cacheEnabled) {
+                        postCounts.put(authUserId, new CachedPostCount(copy(count), token, System.nanoTime()));
+                    }
+                })
+                .onErrorResume(error -> Mono.empty())
+                .defaultIfEmpty(createDefaultPostCount(authUserId))
+                .subscribe(count -> {
+                    // Removed before completing, so no caller can join a lookup that has already finished
+                    inFlight.remove(authUserId, lookup);
+                    lookup.complete(count);
+                });
+        return lookup;
+    }
+
+    @Override
+    public void recordUpload(String authUserId, boolean video) {
+        if (!cacheEnabled || authUserId == null) {
+            return;
+        }
+        postCounts.asMap().computeIfPresent(authUserId, (key, entry) -> {
+            PostCount current = entry.postCount();
+            PostCount updated = copy(current);
+            updated.setCount(increment(current.getCount()));
+            if (video) {
+                updated.setVideoCount(increment(current.getVideoCount()));
+            } else {
+                updated.setImageCount(increment(current.getImageCount()));
+            }
+            return new CachedPostCount(updated, entry.token(), entry.fetchedAtNanos());
+        });
+    }
+
+    /**
+     * Refreshes cached counts that have not been confirmed by the user service for a while. The user
+     * service stays the source of truth, so its answer replaces the locally incremented count.
+     */
+    @Scheduled(fixedDelayString = "${service.post-count.cache.reconcile-interval-ms:30000}")
+    public void reconcilePostCounts() {
+        if (!cacheEnabled || !reconciling.compareAndSet(false, true)) {
+            return;
+        }
+        long staleBefore = System.nanoTime() - Duration.ofSeconds(reconcileAfterSeconds).toNanos();
+        Flux.fromIterable(postCounts.asMap().entrySet())
+                .filter(entry -> entry.getValue().fetchedAtNanos() - staleBefore < 0)
+                .flatMap(entry -> callExternalServiceWithGet(createPostCountRequest(entry.getKey()), entry.getValue().token())
+                        .doOnNext(count -> postCounts.asMap().computeIfPresent(entry.getKey(),
+                                (key, cached) -> new CachedPostCount(count, cached.token(), System.nanoTime())))
+                        .onErrorResume(error -> {
+                            log.debug("Could not reconcile post count for user: {}", entry.getKey());
+                            return Mono.empty();
+                        }), RECONCILE_CONCURRENCY)
+                .doFinally(signal -> reconciling.set(false))
+                .subscribe();
     }
 
     /**
@@ -75,6 +224,22 @@ public class UserServiceImpl implements UserService {
                 .build();
     }
 
+    /**
+     * Cached entries are shared, callers always get their own copy.
+     */
+    private PostCount copy(PostCount postCount) {
+        return PostCount.builder()
+                .count(postCount.getCount())
+                .imageCount(postCount.getImageCount())
+                .videoCount(postCount.getVideoCount())
+                .authUserId(postCount.getAuthUserId())
+                .build();
+    }
+
+    private static Long increment(Long value) {
+        return value == null ? 1L : value + 1;
+    }
+
     /**
      * Makes an HTTP call to the external service to retrieve post-count information.
      */
@@ -95,5 +260,7 @@ public class UserServiceImpl implements UserService {
                 .doOnError(error -> log.error("External service call failed", error));
     }
 
+    private record CachedPostCount(PostCount postCount, String token, long fetchedAtNanos) {
+    }
 
-}
\ No newline at end of file
+}
@@ -1,6 +1,14 @@
 package com.example.s3_bucket.service.Impl;
 
+import com.example.s3_bucket.dto.VideoCompressionResult;
+import com.example.s3_bucket.dto.VideoProbe;
+import com.example.s3_bucket.enums.VideoCompressionMode;
+import com.example.s3_bucket.service.TranscodeScheduler;
 import com.example.s3_bucket.service.VideoCompressionService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -8,43 +16,374 @@ import java.io.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Brings uploaded videos to the upload profile: H.264 yuv420p, at most 1080 wide, 30 fps and 5 Mbit/s, AAC
+ * audio, faststart. One JSON ffprobe report decides the path. Inputs that already meet the profile, which
+ * is what most phones record, only have their streams copied into a faststart container; everything else
+ * is re-encoded on one of the {@link TranscodeScheduler} slots.
+ * <p>
+ * With per-title encoding the encode settings follow the content. A few short segments are encoded at low
+ * resolution with a fixed CRF, and the bits they need per pixel place the video between static (high CRF,
+ * low maxrate, fastest allowed preset) and high motion (low CRF, high maxrate, slowest allowed preset). The
+ * slower presets spend their extra motion search where it saves the most bits under the maxrate cap; static
+ * content already compresses well with a fast one.
+ */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class VideoCompressionServiceImpl implements VideoCompressionService {
 
+    private static final String PROFILE_VIDEO_CODEC = "h264";
+    private static final String PROFILE_PIXEL_FORMAT = "yuv420p";
+    private static final String PROFILE_AUDIO_CODEC = "aac";
+
+    private final TranscodeScheduler transcodeScheduler;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
     @Value("${video.compression.timeout:300}") // 5 minutes default timeout
     private int processTimeoutSeconds;
 
     @Value("${video.compression.preset:medium}") // balanced preset between speed and compression
     private String compressionPreset;
 
+    @Value("${video.compression.probe-timeout:30}")
+    private int probeTimeoutSeconds;
+
+    @Value("${video.compression.passthrough.enabled:true}")
+    private boolean passthroughEnabled;
+
+    @Value("${video.compression.passthrough.max-width:1080}")
+    private int passthroughMaxWidth;
+
+    @Value("${video.compression.passthrough.max-fps:30}")
+    private double passthroughMaxFps;
+
+    @Value("${video.compression.passthrough.max-bitrate-kbps:5000}")
+    private long passthroughMaxBitrateKbps;
+
+    @Value("${video.compression.per-title.enabled:false}")
+    private boolean perTitleEnabled;
+
+    @Value("${video.compression.per-title.samples:3}")
+    private int perTitleSamples;
+
+    @Value("${video.compression.per-title.sample-seconds:2}")
+    private double perTitleSampleSeconds;
+
+    @Value("${video.compression.per-title.probe-width:320}")
+    private int perTitleProbeWidth;
+
+    @Value("${video.compression.per-title.low-bpp:0.04}")
+    private double perTitleLowBpp;
+
+    @Value("${video.compression.per-title.high-bpp:0.2}")
+    private double perTitleHighBpp;
+
+    @Value("${video.compression.per-title.crf-min:20}")
+    private int perTitleCrfMin;
+
+    @Value("${video.compression.per-title.crf-max:27}")
+    private int perTitleCrfMax;
+
+    @Value("${video.compression.per-title.maxrate-min-kbps:2000}")
+    private int perTitleMaxrateMinKbps;
+
+    @Value("${video.compression.per-title.maxrate-max-kbps:7000}")
+    private int perTitleMaxrateMaxKbps;
+
+    @Value("${video.compression.per-title.presets:veryfast,faster,fast}")
+    private List<String> perTitlePresets;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
     @Override
-    public void compressVideo(File inputFile, File outputFile) throws IOException {
+    public VideoCompressionResult compressVideo(File inputFile, File outputFile, CompletableFuture<?> abort)
+            throws IOException {
+        return compress(inputFile, new FileOutput(outputFile), abort);
+    }
+
+    @Override
+    public VideoCompressionResult compressVideo(File inputFile, VideoSink sink, CompletableFuture<?> abort)
+            throws IOException {
+        return compress(inputFile, new PipeOutput(sink), abort);
+    }
+
+    private VideoCompressionResult compress(File inputFile, Output output, CompletableFuture<?> abort) throws IOException {
         if (!inputFile.exists()) {
             throw new FileNotFoundException("Input file does not exist: " + inputFile.getAbsolutePath());
         }
 
+        long start = System.nanoTime();
+        VideoProbe probe = probe(inputFile);
+        VideoCompressionMode mode = VideoCompressionMode.TRANSCODE;
+        EncodeSettings settings = null;
+        String reason = probe == null ? "probe failed" : profileMismatch(probe);
+        if (passthroughEnabled && reason == null) {
+            try {
+                // A copy is I/O bound, so it does not take an encode slot
+                output.run(buildRemuxCommand(inputFile, output), result(VideoCompressionMode.REMUX, probe, null, 0), abort);
+                mode = VideoCompressionMode.REMUX;
+            } catch (IOException e) {
+                checkAborted(inputFile, abort);
+                log.warn("Remux of {} failed, transcoding instead: {}", inputFile.getName(), e.getMessage());
+            }
+        }
+        if (mode == VideoCompressionMode.TRANSCODE) {
+            log.info("LOG:: Transcoding {}: {}", inputFile.getName(), reason == null ? "passthrough disabled" : reason);
+            // Waits for a free encode slot, the timeout only covers the encode itself. The complexity probe
+            // is CPU work as well, so it runs in the same slot
+            AtomicReference<EncodeSettings> chosen = new AtomicReference<>();
+            transcodeScheduler.execute(() -> {
+                // The slot may have been waited for longer than the caller still wanted the video
+                checkAborted(inputFile, abort);
+                chosen.set(perTitleEnabled ? chooseSettings(inputFile, probe) : defaultSettings());
+                output.run(buildTranscodeCommand(inputFile, output, probe, chosen.get()),
+                        result(VideoCompressionMode.TRANSCODE, probe, chosen.get(), 0), abort);
+            });
+            settings = chosen.get();
+        }
+
+        meterRegistry.counter("video.compression", "mode", mode.name().toLowerCase(Locale.ROOT)).increment();
+        return result(mode, probe, settings, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void checkAborted(File inputFile, CompletableFuture<?> abort) throws IOException {
+        if (abort.isDone()) {
+            throw new IOException("Compression of " + inputFile.getName() + " was aborted");
+        }
+    }
+
+    private static VideoCompressionResult result(VideoCompressionMode mode, VideoProbe probe, EncodeSettings settings,
+                                                 long elapsedMillis) {
+        return VideoCompressionResult.builder()
+                .mode(mode)
+                .probe(probe)
+                .elapsedMillis(elapsedMillis)
+                .crf(settings == null ? null : settings.crf())
+                .maxrateKbps(settings == null ? null : settings.maxrateKbps())
+                .preset(settings == null ? null : settings.preset())
+                .complexity(settings == null ? null : settings.complexity())
+                .build();
+    }
+
+    /**
+     * Why the input does not meet the upload profile, or {@code null} when it can be copied as it is.
+     */
+    private String profileMismatch(VideoProbe probe) {
+        if (!PROFILE_VIDEO_CODEC.equals(probe.getVideoCodec())) {
+            return "video codec " + probe.getVideoCodec();
+        }
+        if (!PROFILE_PIXEL_FORMAT.equals(probe.getPixelFormat())) {
+            return "pixel format " + probe.getPixelFormat();
+        }
+        if (probe.getDisplayWidth() == 0 || probe.getDisplayWidth() > passthroughMaxWidth) {
+            return "width " + probe.getDisplayWidth();
+        }
+        // Small tolerance for variable frame rate phone recordings averaging just above 30
+        if (probe.getFrameRate() == 0 || probe.getFrameRate() > passthroughMaxFps + 0.5) {
+            return "frame rate " + probe.getFrameRate();
+        }
+        if (probe.getVideoBitrate() == 0 || probe.getVideoBitrate() > passthroughMaxBitrateKbps * 1000) {
+            return "bitrate " + probe.getVideoBitrate();
+        }
+        if (probe.getAudioCodec() != null && !PROFILE_AUDIO_CODEC.equals(probe.getAudioCodec())) {
+            return "audio codec " + probe.getAudioCodec();
+        }
+        // Only ISO BMFF inputs (mp4, mov) can be copied into the output container without surprises
+        if (probe.getFormatName() == null || !probe.getFormatName().contains("mp4")) {
+            return "container " + probe.getFormatName();
+        }
+        return null;
+    }
+
+    private List<String> buildRemuxCommand(File inputFile, Output output) {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                "ffmpeg",
+                "-i", inputFile.getAbsolutePath(),
+                "-map", "0:v:0",                      // Data and timecode tracks of phones are dropped
+                "-map", "0:a:0?",
+                "-c", "copy"
+        ));
+        command.addAll(output.arguments());
+        return command;
+    }
+
+    private List<String> buildTranscodeCommand(File inputFile, Output output, VideoProbe probe,
+                                                EncodeSettings settings) {
+        // Base command
+        List<String> command = new ArrayList<>(Arrays.asList(
+                "ffmpeg",
+                "-i", inputFile.getAbsolutePath(),
+                "-r", "30",                           // 30 FPS (matches Instagram's standard)
+                "-vf", "scale=1080:-2",                 // 1080p width, auto height (divisible by 2)
+                "-c:v", "libx264",                     // Correct codec (required by Instagram)
+                "-preset", settings.preset(),          // Good choice (balance speed/quality)
+                "-crf", String.valueOf(settings.crf()) // Good range (18-28, lower = better)
+        ));
+        if (settings.complexity() == null) {
+            command.addAll(Arrays.asList(
+                    "-b:v", "5M",                        // Bitrate for 1080p30 (~5 Mbps)
+                    "-maxrate", "5M",                   // Instagram's recommended 3.5–4.5Mbps
+                    "-bufsize", "5M"                    // 2x maxrate (standard for streaming)
+            ));
+        } else {
+            // Per-title encodes stay constant quality, the maxrate only caps the peaks
+            command.addAll(Arrays.asList(
+                    "-maxrate", settings.maxrateKbps() + "k",
+                    "-bufsize", (2 * settings.maxrateKbps()) + "k"
+            ));
+        }
+        command.addAll(Arrays.asList(
+                "-pix_fmt", "yuv420p",                // Mandatory for compatibility
+                "-c:a", "aac",                        // Correct audio codec
+                "-b:a", "192k",                       // Higher quality within Instagram's 128–256k range
+                "-ar", "44100",                       // Instagram prefers 44.1kHz, not 48kHz
+                "-threads", String.valueOf(transcodeScheduler.getThreadsPerEncode()) // Stays within its slot
+        ));
+
+        // ffmpeg applies the rotation while encoding, the tag must not rotate the result again
+        if (probe != null && probe.getRotation() != 0) {
+            command.addAll(Arrays.asList("-metadata:s:v", "rotate=0"));
+        }
+
+        command.addAll(output.arguments());
+        return command;
+    }
+
+    private EncodeSettings defaultSettings() {
+        return new EncodeSettings(23, 5000, compressionPreset, null);
+    }
+
+    /**
+     * Places the video between static and high motion from the bits a fixed-CRF encode of a few low
+     * resolution samples needs per pixel, and picks CRF, maxrate and preset within the configured bounds.
+     * Falls back to the default settings when the samples cannot be encoded.
+     */
+    private EncodeSettings chooseSettings(File inputFile, VideoProbe probe) {
+        if (probe == null || probe.getDisplayWidth() == 0) {
+            return defaultSettings();
+        }
+        int probeHeight = Math.max(2, (int) Math.round((double) perTitleProbeWidth * displayHeight(probe)
+                / probe.getDisplayWidth()));
+        probeHeight += probeHeight % 2;
+        double duration = probe.getDurationSeconds();
+        int samples = duration > perTitleSampleSeconds * perTitleSamples ? perTitleSamples : 1;
+        double bits = 0;
+        double pixels = 0;
+        try {
+            for (int i = 0; i < samples; i++) {
+                // Samples sit in the middle of equal slices of the video
+                double offset = Math.max(0, duration * (i + 0.5) / samples - perTitleSampleSeconds / 2);
+                double length = duration > 0 ? Math.min(perTitleSampleSeconds, duration - offset) : perTitleSampleSeconds;
+                bits += 8.0 * encodeSample(inputFile, offset, probeHeight);
+                pixels += (double) perTitleProbeWidth * probeHeight * 30 * length;
+            }
+        } catch (IOException e) {
+            log.warn("Complexity probe of {} failed, using default encode settings: {}", inputFile.getName(), e.getMessage());
+            return defaultSettings();
+        }
+        double bitsPerPixel = pixels == 0 ? 0 : bits / pixels;
+        double complexity = Math.max(0, Math.min(1, (bitsPerPixel - perTitleLowBpp) / (perTitleHighBpp - perTitleLowBpp)));
+        int crf = (int) Math.round(perTitleCrfMax - complexity * (perTitleCrfMax - perTitleCrfMin));
+        int maxrate = (int) Math.round(perTitleMaxrateMinKbps + complexity * (perTitleMaxrateMaxKbps - perTitleMaxrateMinKbps));
+        // Presets are listed fastest first, the most complex content gets the slowest
+        String preset = perTitlePresets.isEmpty()
+                ? compressionPreset
+                : perTitlePresets.get((int) Math.round(complexity * (perTitlePresets.size() - 1)));
+        log.info("LOG:: Per-title settings for {}: {} bpp, complexity {}, crf {}, maxrate {}k, preset {}",
+                inputFile.getName(), String.format(Locale.ROOT, "%.4f", bitsPerPixel),
+                String.format(Locale.ROOT, "%.2f", complexity), crf, maxrate, preset);
+        return new EncodeSettings(crf, maxrate, preset, complexity);
+    }
+
+    private static int displayHeight(VideoProbe probe) {
+        return Math.abs(probe.getRotation()) % 180 == 90 ? probe.getWidth() : probe.getHeight();
+    }
+
+    /**
+     * Encodes one low resolution sample with ultrafast CRF 23 and returns the size of the encoded stream.
+     */
+    private long encodeSample(File inputFile, double offset, int height) throws IOException {
+        List<String> command = Arrays.asList(
+                "ffmpeg",
+                "-v", "error",
+                "-ss", String.format(Locale.ROOT, "%.3f", offset),
+                "-t", String.format(Locale.ROOT, "%.3f", perTitleSampleSeconds),
+                "-i", inputFile.getAbsolutePath(),
+                "-an",
+                "-r", "30",
+                "-vf", "scale=" + perTitleProbeWidth + ":" + height,
+                "-c:v", "libx264",
+                "-preset", "ultrafast",
+                "-crf", "23",
+                "-threads", String.valueOf(transcodeScheduler.getThreadsPerEncode()),
+                "-f", "h264",
+                "-"
+        );
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            long size;
+            try (InputStream output = process.getInputStream()) {
+                size = output.transferTo(OutputStream.nullOutputStream());
+            }
+            process.onExit().get(probeTimeoutSeconds, TimeUnit.SECONDS);
+            if (process.exitValue() != 0) {
+                throw new IOException("Sample encode failed with exit code: " + process.exitValue());
+            }
+            return size;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Sample encode was interrupted", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("Sample encode did not finish", e);
+        } finally {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private void runFfmpeg(List<String> command, File outputFile, CompletableFuture<?> abort) throws IOException {
         Process process = null;
         try {
-            log.info("LOG:: Starting video compression process for file: {}", inputFile.getAbsolutePath());
-            process = getProcess(inputFile, outputFile);
-            log.info("LOG:: Video compression process started for file: {}", inputFile.getAbsolutePath());
-            // Handle process output in a separate thread to prevent blocking
-            StreamGobbler outputGobbler = new StreamGobbler(process.getInputStream());
-            StreamGobbler errorGobbler = new StreamGobbler(process.getErrorStream());
-            
-            outputGobbler.start();
-            errorGobbler.start();
-
-            // Wait for a process with timeout
-            if (!process.waitFor(processTimeoutSeconds, TimeUnit.SECONDS)) {
+            log.info("LOG:: Starting ffmpeg for file: {}", outputFile.getName());
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.redirectErrorStream(true);
+            process = processBuilder.start();
+            // Handle process output in a separate thread to prevent blocking. stderr is merged into stdout,
+            // so one reader per process is enough
+            Thread.Builder gobblerThreads = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform();
+            gobblerThreads.name("ffmpeg-output").start(new StreamGobbler(process.getInputStream()));
+            Process started = process;
+            abort.whenComplete((ignored, error) -> started.destroyForcibly());
+
+            // Wait for a process with timeout. Process.waitFor blocks in Object.wait, which pins a virtual thread
+            // to its carrier, while onExit() completes a future from the JDK process reaper
+            try {
+                process.onExit().get(processTimeoutSeconds, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
                 process.destroyForcibly();
                 throw new IOException("Video compression timed out after " + processTimeoutSeconds + " seconds");
+            } catch (ExecutionException e) {
+                throw new IOException("Video compression process failed", e.getCause());
             }
 
             int exitCode = process.exitValue();
+            if (abort.isDone()) {
+                throw new IOException("Video compression was aborted");
+            }
             if (exitCode != 0) {
                 throw new IOException("Video compression failed with exit code: " + exitCode);
             }
@@ -64,68 +403,267 @@ public class VideoCompressionServiceImpl implements VideoCompressionService {
         }
     }
 
-    private Process getProcess(File inputFile, File outputFile) throws IOException {
-        log.info("LOG:: Starting video compression process for file");
-        // First, probe the video to detect rotation
-        String rotation = getVideoRotation(inputFile);
-        log.info("LOG:: Detected video rotation: {}", rotation);
+    /**
+     * Reads codecs, size, rotation, frame rate, bitrate and duration in one ffprobe call. Returns {@code null}
+     * when the file cannot be probed, which sends it down the transcode path.
+     */
+    @Override
+    public VideoProbe probe(File inputFile) {
+        ProcessBuilder probeBuilder = new ProcessBuilder(
+                "ffprobe",
+                "-v", "error",
+                "-print_format", "json",
+                "-show_format",
+                "-show_streams",
+                inputFile.getAbsolutePath()
+        ).redirectError(ProcessBuilder.Redirect.DISCARD);
 
-        ProcessBuilder processBuilder = new ProcessBuilder();
+        Process process = null;
+        try {
+            process = probeBuilder.start();
+            byte[] report;
+            try (InputStream output = process.getInputStream()) {
+                report = output.readAllBytes();
+            }
+            process.onExit().get(probeTimeoutSeconds, TimeUnit.SECONDS);
+            if (process.exitValue() != 0) {
+                log.warn("ffprobe failed for {} with exit code {}", inputFile.getName(), process.exitValue());
+                return null;
+            }
+            VideoProbe probe = parseProbe(objectMapper.readTree(report));
+            log.info("LOG:: Probed {}: {}", inputFile.getName(), probe);
+            return probe;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (IOException | ExecutionException | TimeoutException e) {
+            log.error("Error probing video {}", inputFile.getName(), e);
+            return null;
+        } finally {
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
 
-        // Base command
-        List<String> command = new ArrayList<>(Arrays.asList(
-                "ffmpeg",
-                "-i", inputFile.getAbsolutePath(),
-                "-r", "30",                           // 30 FPS (matches Instagram's standard)
-                "-vf", "scale=1080:-2",                 // 1080p width, auto height (divisible by 2)
-                "-c:v", "libx264",                     // Correct codec (required by Instagram)
-                "-preset", compressionPreset,          // Good choice (balance speed/quality)
-                "-crf", "23",                          // Good range (18-28, lower = better)
-                "-b:v", "5M",                        // Bitrate for 1080p30 (~5 Mbps)
-                "-maxrate", "5M",                   // Instagram's recommended 3.5–4.5Mbps
-                "-bufsize", "5M",                   // 2x maxrate (standard for streaming)
-                "-pix_fmt", "yuv420p",                // Mandatory for compatibility
-                "-movflags", "+faststart",            // Required for web playback
-                "-c:a", "aac",                        // Correct audio codec
-                "-b:a", "192k",                       // Higher quality within Instagram's 128–256k range
-                "-ar", "44100",                       // Instagram prefers 44.1kHz, not 48kHz
-                "-y"                                  // Overwrite output
-        ));
+    private VideoProbe parseProbe(JsonNode report) {
+        JsonNode video = null;
+        JsonNode audio = null;
+        for (JsonNode stream : report.path("streams")) {
+            String type = stream.path("codec_type").asText();
+            if (video == null && "video".equals(type) && stream.path("disposition").path("attached_pic").asInt() == 0) {
+                video = stream;
+            } else if (audio == null && "audio".equals(type)) {
+                audio = stream;
+            }
+        }
+        if (video == null) {
+            return null;
+        }
+        JsonNode format = report.path("format");
+        long videoBitrate = video.path("bit_rate").asLong(0);
+        if (videoBitrate == 0) {
+            // Some muxers only report the overall bitrate, the audio share is taken off it
+            long total = format.path("bit_rate").asLong(0);
+            long audioBitrate = audio == null ? 0 : audio.path("bit_rate").asLong(0);
+            videoBitrate = Math.max(0, total - audioBitrate);
+        }
+        double frameRate = parseRate(video.path("avg_frame_rate").asText());
+        if (frameRate == 0) {
+            frameRate = parseRate(video.path("r_frame_rate").asText());
+        }
+        return VideoProbe.builder()
+                .formatName(format.path("format_name").asText(null))
+                .videoCodec(video.path("codec_name").asText(null))
+                .pixelFormat(video.path("pix_fmt").asText(null))
+                .width(video.path("width").asInt())
+                .height(video.path("height").asInt())
+                .rotation(parseRotation(video))
+                .frameRate(frameRate)
+                .videoBitrate(videoBitrate)
+                .audioCodec(audio == null ? null : audio.path("codec_name").asText(null))
+                .durationSeconds(format.path("duration").asDouble(0))
+                .build();
+    }
 
-        // Handle rotation if detected
-        if (rotation != null) {
-            command.addAll(Arrays.asList("-metadata:s:v", "rotate=0"));
+    /**
+     * Older ffmpeg versions report the rotation as a stream tag, newer ones in the display matrix side data.
+     */
+    private static int parseRotation(JsonNode video) {
+        JsonNode tag = video.path("tags").path("rotate");
+        if (!tag.isMissingNode()) {
+            return tag.asInt();
+        }
+        for (JsonNode sideData : video.path("side_data_list")) {
+            if (sideData.has("rotation")) {
+                return sideData.path("rotation").asInt();
+            }
         }
+        return 0;
+    }
 
-        command.add(outputFile.getAbsolutePath());
-        processBuilder.command(command);
-        processBuilder.redirectErrorStream(true);
-        return processBuilder.start();
+    /**
+     * Parses ffprobe rates such as {@code 30000/1001}; {@code 0/0} and malformed values are 0.
+     */
+    private static double parseRate(String rate) {
+        int slash = rate.indexOf('/');
+        try {
+            if (slash < 0) {
+                return rate.isEmpty() ? 0 : Double.parseDouble(rate);
+            }
+            double denominator = Double.parseDouble(rate.substring(slash + 1));
+            return denominator == 0 ? 0 : Double.parseDouble(rate.substring(0, slash)) / denominator;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 
-    private String getVideoRotation(File inputFile) throws IOException {
-        ProcessBuilder probeBuilder = new ProcessBuilder(
-                "ffprobe",
-                "-v", "error",
-                "-select_streams", "v:0",
-                "-show_entries", "stream_tags=rotate",
-                "-of", "default=nw=1:nk=1",
-                inputFile.getAbsolutePath()
-        );
+    /**
+     * Runs ffmpeg with its output on stdout and hands the stream to the sink while the process is encoding.
+     * ffmpeg blocks while the sink is not reading, so memory stays bounded by what the sink buffers.
+     */
+    private void streamFfmpeg(List<String> command, VideoSink sink, VideoCompressionResult encode,
+                              CompletableFuture<?> abort) throws IOException {
+        log.info("LOG:: Starting ffmpeg with output to a pipe");
+        Process process = new ProcessBuilder(command).start();
+        Thread.Builder gobblerThreads = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform();
+        gobblerThreads.name("ffmpeg-output").start(new StreamGobbler(process.getErrorStream()));
 
-        Process process = probeBuilder.start();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String rotation = reader.readLine();
-            if (rotation != null && !rotation.isEmpty()) {
-                return rotation;
+        // Nobody waits on the process while the sink reads, so the timeout kills it and the stream fails
+        AtomicBoolean timedOut = new AtomicBoolean();
+        CompletableFuture.delayedExecutor(processTimeoutSeconds, TimeUnit.SECONDS).execute(() -> {
+            if (process.isAlive()) {
+                timedOut.set(true);
+                process.destroyForcibly();
+            }
+        });
+        // Killing the process fails the stream, which aborts whatever the sink was uploading
+        abort.whenComplete((ignored, error) -> process.destroyForcibly());
+        try (ProcessOutputStream content = new ProcessOutputStream(process, timedOut, abort)) {
+            sink.consume(content, encode);
+            // A sink that stopped before the end must not pass for a complete video
+            content.checkExit();
+        } finally {
+            if (process.isAlive()) {
+                process.destroyForcibly();
             }
-        } catch (IOException e) {
-            log.error("Error probing video rotation", e);
         }
-        return null;
     }
 
-    private static class StreamGobbler extends Thread {
+    /**
+     * Where ffmpeg writes its output: the trailing command arguments and how the process is run.
+     */
+    private interface Output {
+        List<String> arguments();
+
+        void run(List<String> command, VideoCompressionResult encode, CompletableFuture<?> abort) throws IOException;
+    }
+
+    private class FileOutput implements Output {
+        private final File outputFile;
+
+        FileOutput(File outputFile) {
+            this.outputFile = outputFile;
+        }
+
+        @Override
+        public List<String> arguments() {
+            return List.of(
+                    "-movflags", "+faststart",        // Required for web playback
+                    "-y",                             // Overwrite output
+                    outputFile.getAbsolutePath());
+        }
+
+        @Override
+        public void run(List<String> command, VideoCompressionResult encode, CompletableFuture<?> abort)
+                throws IOException {
+            runFfmpeg(command, outputFile, abort);
+        }
+    }
+
+    private class PipeOutput implements Output {
+        private final VideoSink sink;
+
+        PipeOutput(VideoSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public List<String> arguments() {
+            // faststart needs a seekable output; a fragmented MP4 starts with an empty moov and plays as it arrives
+            return List.of(
+                    "-movflags", "frag_keyframe+empty_moov+default_base_moof",
+                    "-f", "mp4",
+                    "pipe:1");
+        }
+
+        @Override
+        public void run(List<String> command, VideoCompressionResult encode, CompletableFuture<?> abort)
+                throws IOException {
+            streamFfmpeg(command, sink, encode, abort);
+        }
+    }
+
+    /**
+     * The stdout of ffmpeg. End of stream is only reported once the process has exited successfully, otherwise
+     * reading fails, so an upload of a truncated video is aborted rather than completed.
+     */
+    private static class ProcessOutputStream extends FilterInputStream {
+        private final Process process;
+        private final AtomicBoolean timedOut;
+        private final CompletableFuture<?> abort;
+
+        ProcessOutputStream(Process process, AtomicBoolean timedOut, CompletableFuture<?> abort) {
+            super(process.getInputStream());
+            this.process = process;
+            this.timedOut = timedOut;
+            this.abort = abort;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value == -1) {
+                checkExit();
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count == -1) {
+                checkExit();
+            }
+            return count;
+        }
+
+        void checkExit() throws IOException {
+            try {
+                // stdout is closed, the process is exiting or gets killed by the timeout
+                int exitCode = process.onExit().get().exitValue();
+                if (timedOut.get()) {
+                    throw new IOException("Video compression timed out");
+                }
+                if (abort.isDone()) {
+                    throw new IOException("Video compression was aborted");
+                }
+                if (exitCode != 0) {
+                    throw new IOException("Video compression failed with exit code: " + exitCode);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Video compression process was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Video compression process failed", e.getCause());
+            }
+        }
+    }
+
+    private record EncodeSettings(int crf, int maxrateKbps, String preset, Double complexity) {
+    }
+
+    private static class StreamGobbler implements Runnable {
         private final InputStream inputStream;
 
         StreamGobbler(InputStream inputStream) {
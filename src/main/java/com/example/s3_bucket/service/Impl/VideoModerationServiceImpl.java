@@ -0,0 +1,315 @@
+package com.example.s3_bucket.service.Impl;
+
+import com.example.s3_bucket.service.VideoModerationService;
+import com.example.s3_bucket.util.ModerationLabels;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.model.*;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks every outstanding Rekognition video moderation job from a single scheduler instead of parking a
+ * request thread per video. Jobs are polled with exponential backoff and jitter, and all
+ * {@code GetContentModeration} calls share one request budget per second. With
+ * {@code rekognition.video.notification.enabled} the job-completion messages published through SNS are read
+ * from an SQS queue, and polling only acts as a slow safety net.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VideoModerationServiceImpl implements VideoModerationService {
+
+    private final RekognitionClient rekognitionClient;
+    private final SqsClient sqsClient;
+    private final Map<String, PendingJob> pendingJobs = new ConcurrentHashMap<>();
+
+    @Value("${api.class.s3.image.bucket-name}")
+    private String bucketName;
+
+    @Value("${rekognition.minimum.confidence}")
+    private Float minConfidence;
+
+    @Value("${rekognition.video.poll.tick-ms:250}")
+    private long tickMs;
+
+    @Value("${rekognition.video.poll.initial-delay-ms:2000}")
+    private long initialDelayMs;
+
+    @Value("${rekognition.video.poll.max-delay-ms:30000}")
+    private long maxDelayMs;
+
+    @Value("${rekognition.video.poll.multiplier:1.6}")
+    private double multiplier;
+
+    @Value("${rekognition.video.poll.jitter:0.2}")
+    private double jitter;
+
+    @Value("${rekognition.video.poll.max-requests-per-second:5}")
+    private int maxRequestsPerSecond;
+
+    @Value("${rekognition.video.poll.threads:2}")
+    private int pollThreads;
+
+    @Value("${rekognition.video.poll.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${rekognition.video.notification.enabled:false}")
+    private boolean notificationEnabled;
+
+    @Value("${rekognition.video.notification.sns-topic-arn:}")
+    private String snsTopicArn;
+
+    @Value("${rekognition.video.notification.role-arn:}")
+    private String roleArn;
+
+    @Value("${rekognition.video.notification.sqs-queue-url:}")
+    private String sqsQueueUrl;
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService pollExecutor;
+    private ExecutorService notificationListener;
+    private volatile boolean running = true;
+    private final AtomicInteger budget = new AtomicInteger();
+
+    @PostConstruct
+    private void start() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("moderation-scheduler-"));
+        // The request budget already bounds in-flight polls, so virtual mode does not need a sized pool
+        this.pollExecutor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("moderation-poll-", 1).factory())
+                : Executors.newFixedThreadPool(pollThreads, new CustomizableThreadFactory("moderation-poll-"));
+        scheduler.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::refillBudget, 0, 1, TimeUnit.SECONDS);
+
+        if (notificationEnabled) {
+            log.info("LOG:: Video moderation notifications enabled, listening on {}", sqsQueueUrl);
+            this.notificationListener = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("moderation-sqs-"));
+            notificationListener.execute(this::listenForNotifications);
+        }
+    }
+
+    @PreDestroy
+    private void stop() {
+        running = false;
+        scheduler.shutdownNow();
+        pollExecutor.shutdownNow();
+        if (notificationListener != null) {
+            notificationListener.shutdownNow();
+        }
+        pendingJobs.values().forEach(job -> job.future.completeExceptionally(
+                new IOException("Video moderation service is shutting down")));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> moderate(String s3Key) {
+        StartContentModerationRequest.Builder request = StartContentModerationRequest.builder()
+                .video(Video.builder()
+                        .s3Object(S3Object.builder()
+                                .bucket(bucketName)
+                                .name(s3Key)
+                                .build())
+                        .build())
+                .minConfidence(minConfidence);
+        if (notificationEnabled) {
+            request.notificationChannel(NotificationChannel.builder()
+                    .snsTopicArn(snsTopicArn)
+                    .roleArn(roleArn)
+                    .build());
+        }
+
+        String jobId;
+        try {
+            jobId = rekognitionClient.startContentModeration(request.build()).jobId();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        log.info("LOG:: Started video moderation job {} for object {}", jobId, s3Key);
+
+        PendingJob job = new PendingJob(jobId, s3Key);
+        job.nextPollAt = System.currentTimeMillis() + withJitter(notificationEnabled ? maxDelayMs : initialDelayMs);
+        pendingJobs.put(jobId, job);
+        return job.future;
+    }
+
+    private void refillBudget() {
+        budget.set(maxRequestsPerSecond);
+    }
+
+    private boolean takeBudget() {
+        return budget.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0;
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            List<PendingJob> due = pendingJobs.values().stream()
+                    .filter(job -> !job.inFlight && job.nextPollAt <= now)
+                    .sorted(Comparator.comparingLong(job -> job.nextPollAt))
+                    .toList();
+            for (PendingJob job : due) {
+                if (now - job.startedAt > TimeUnit.MINUTES.toMillis(timeoutMinutes)) {
+                    complete(job, null, new TimeoutException("Video moderation timed out for object " + job.s3Key));
+                    continue;
+                }
+                if (!takeBudget()) {
+                    // Remaining jobs stay due and are served first on the next tick
+                    break;
+                }
+                job.inFlight = true;
+                pollExecutor.execute(() -> poll(job));
+            }
+        } catch (Exception e) {
+            log.error("Video moderation scheduler tick failed", e);
+        }
+    }
+
+    private void poll(PendingJob job) {
+        try {
+            GetContentModerationResponse result = rekognitionClient.getContentModeration(
+                    GetContentModerationRequest.builder().jobId(job.jobId).nextToken(job.nextToken).build());
+            log.debug("Video moderation job {} status: {}", job.jobId, result.jobStatus());
+
+            if (result.jobStatus() == VideoJobStatus.IN_PROGRESS) {
+                job.attempts++;
+                long delay = notificationEnabled
+                        ? maxDelayMs
+                        : (long) Math.min(maxDelayMs, initialDelayMs * Math.pow(multiplier, job.attempts));
+                job.nextPollAt = System.currentTimeMillis() + withJitter(delay);
+                job.inFlight = false;
+            } else if (result.jobStatus() == VideoJobStatus.SUCCEEDED) {
+                onResultPage(job, result);
+            } else {
+                log.error("Video moderation failed for object {}: {}", job.s3Key, result.statusMessage());
+                complete(job, null, new IOException("Video moderation failed: " + result.statusMessage()));
+            }
+        } catch (Exception e) {
+            log.warn("Polling video moderation job {} failed, retrying: {}", job.jobId, e.getMessage());
+            job.attempts++;
+            job.nextPollAt = System.currentTimeMillis() + withJitter(maxDelayMs);
+            job.inFlight = false;
+        }
+    }
+
+    /**
+     * Checks one result page of a finished job, stopping at the first inappropriate label. Every further page
+     * is fetched by a later tick so that it is charged against the request budget like any other poll.
+     */
+    private void onResultPage(PendingJob job, GetContentModerationResponse page) {
+        boolean inappropriate = page.moderationLabels().stream()
+                .anyMatch(detection -> ModerationLabels.isInappropriate(detection.moderationLabel().name()));
+        if (inappropriate || page.nextToken() == null) {
+            complete(job, inappropriate, null);
+            return;
+        }
+        job.nextToken = page.nextToken();
+        job.nextPollAt = 0;
+        job.inFlight = false;
+    }
+
+    private void complete(PendingJob job, Boolean inappropriate, Throwable error) {
+        pendingJobs.remove(job.jobId);
+        if (error != null) {
+            job.future.completeExceptionally(error);
+        } else {
+            log.info("LOG:: Video moderation job {} finished after {} polls, inappropriate: {}",
+                    job.jobId, job.attempts + 1, inappropriate);
+            job.future.complete(inappropriate);
+        }
+    }
+
+    private long withJitter(long delay) {
+        if (jitter <= 0) {
+            return delay;
+        }
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        return (long) (delay * factor);
+    }
+
+    private void listenForNotifications() {
+        while (running) {
+            try {
+                List<Message> messages = sqsClient.receiveMessage(ReceiveMessageRequest.builder()
+                        .queueUrl(sqsQueueUrl)
+                        .maxNumberOfMessages(10)
+                        .waitTimeSeconds(20)
+                        .build()).messages();
+                for (Message message : messages) {
+                    handleNotification(message.body());
+                    sqsClient.deleteMessage(DeleteMessageRequest.builder()
+                            .queueUrl(sqsQueueUrl)
+                            .receiptHandle(message.receiptHandle())
+                            .build());
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.error("Failed to receive video moderation notifications", e);
+                sleepQuietly(maxDelayMs);
+            }
+        }
+    }
+
+    private void handleNotification(String body) {
+        try {
+            JSONObject notification = new JSONObject(body);
+            // SNS wraps the Rekognition payload in "Message" unless raw message delivery is enabled
+            if (notification.has("Message")) {
+                notification = new JSONObject(notification.getString("Message"));
+            }
+            PendingJob job = pendingJobs.get(notification.optString("JobId"));
+            if (job != null) {
+                log.debug("Video moderation job {} reported {}", job.jobId, notification.optString("Status"));
+                // Results are fetched by the poller so the request budget still applies
+                job.nextPollAt = 0;
+            }
+        } catch (JSONException e) {
+            log.warn("Ignoring malformed video moderation notification: {}", body);
+        }
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class PendingJob {
+        private final String jobId;
+        private final String s3Key;
+        private final long startedAt = System.currentTimeMillis();
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        private volatile long nextPollAt;
+        private volatile boolean inFlight;
+        private volatile int attempts;
+        private volatile String nextToken;
+
+        PendingJob(String jobId, String s3Key) {
+            this.jobId = jobId;
+            this.s3Key = s3Key;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.s3_bucket.service;
+
+import com.example.s3_bucket.enums.ImageType;
+import com.example.s3_bucket.enums.VideoModerationMode;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+
+public interface KeyframeModerationService {
+
+    /**
+     * The moderation strategy for videos uploaded as {@code imageType}.
+     */
+    VideoModerationMode getMode(ImageType imageType);
+
+    /**
+     * Samples frames of the video with ffmpeg and moderates them as images while they are decoded. The future
+     * completes with {@code true} as soon as one frame is inappropriate; sampling stops at that point, or when
+     * the future is cancelled.
+     */
+    CompletableFuture<Boolean> moderate(File videoFile, ImageType imageType);
+
+}
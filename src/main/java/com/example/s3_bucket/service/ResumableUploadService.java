@@ -0,0 +1,34 @@
+package com.example.s3_bucket.service;
+
+import com.example.s3_bucket.dto.ResumableUploadDto;
+import com.example.s3_bucket.enums.ImageType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+public interface ResumableUploadService {
+
+    /**
+     * Registers an upload of {@code length} bytes and returns its id, to which the content is then appended.
+     */
+    ResumableUploadDto create(String fileName, long length, ImageType imageType, String authUserId);
+
+    Optional<ResumableUploadDto> getUpload(String uploadId, String authUserId);
+
+    /**
+     * Appends a chunk at {@code offset}, which has to match the offset the server reports. Bytes received
+     * before a dropped connection are kept. Once the last byte arrives the file is processed like any other
+     * upload and the response is returned in {@link ResumableUploadDto#getResult()}.
+     *
+     * @throws IllegalStateException when the offset does not match or another chunk is being written
+     */
+    Optional<ResumableUploadDto> append(String uploadId, long offset, long contentLength, InputStream content,
+                                        String authUserId, String token) throws IOException;
+
+    /**
+     * Cancels an upload and discards everything received so far.
+     */
+    boolean cancel(String uploadId, String authUserId);
+
+}
@@ -2,14 +2,66 @@ package com.example.s3_bucket.service;
 
 import com.example.s3_bucket.dto.CommonResponse;
 import com.example.s3_bucket.enums.ImageType;
+import com.example.s3_bucket.exceptions.TranscodeRejectedException;
+import com.spordee.user.dto.request.PostCount;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 
 public interface S3Service {
 
     CommonResponse uploadFile(MultipartFile multipartFile, String authUserId, String token, ImageType imageType) throws IOException;
 
+    CommonResponse uploadFileStream(InputStream inputStream, String originalFilename, String authUserId, String token, ImageType imageType) throws IOException;
+
+    /**
+     * Processes a file that has already been staged on local disk. The file is deleted once processing ends.
+     * The post count is resolved by the caller, so processing does not need the caller's token any more.
+     */
+    CommonResponse uploadStagedFile(File stagedFile, String originalFilename, String authUserId, PostCount postCount, ImageType imageType) throws IOException;
+
+    /**
+     * Uploads several files in one request. The user's post count is fetched once for the whole batch and
+     * the files are processed concurrently; the response lists one result per file in request order.
+     */
+    CommonResponse uploadFiles(List<MultipartFile> multipartFiles, String authUserId, String token, ImageType imageType);
+
+    /**
+     * Non-blocking upload of a streamed file part. The content goes to S3 as it arrives; only the
+     * moderation and variant steps that follow run on a worker thread.
+     */
+    Mono<CommonResponse> uploadFileContent(Flux<DataBuffer> content, String originalFilename, String authUserId, String token, ImageType imageType);
+
+    /**
+     * Key under which an upload of {@code originalFilename} is published.
+     */
+    String resolveObjectKey(String originalFilename);
+
+    String resolveContentType(String filename);
+
+    /**
+     * Reserves a transcode queue place when {@code originalFilename} is a video, and returns
+     * {@link TranscodeScheduler.Ticket#NONE} for anything else. The ticket is closed once the upload has finished.
+     *
+     * @throws TranscodeRejectedException when the transcode queue is full
+     */
+    TranscodeScheduler.Ticket admitVideo(String originalFilename);
+
+    /**
+     * Processes an object that a client uploaded straight to {@code stagingKey} and publishes it under
+     * {@link #resolveObjectKey}. The staging object is removed once processing has finished; when it fails the
+     * staging object is left in place so that the call can be retried.
+     *
+     * @throws TranscodeRejectedException for a video while the transcode queue is full
+     */
+    CommonResponse processUploadedObject(String stagingKey, String originalFilename, String authUserId, String token, ImageType imageType);
+
     CommonResponse updatePhoto(String imageUrl,MultipartFile multipartFile, String authUserId, String token, ImageType imageType)  throws IOException;
 
 }
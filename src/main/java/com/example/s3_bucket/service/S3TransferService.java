@@ -0,0 +1,54 @@
+package com.example.s3_bucket.service;
+
+import com.example.s3_bucket.dto.TransferResult;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public interface S3TransferService {
+
+    /**
+     * Streams the given input into the bucket under {@code key}. Objects larger than one part are sent
+     * as an S3 multipart upload while the stream is still being read; the upload is aborted on failure.
+     * The returned result carries the SHA-256 of the streamed bytes.
+     */
+    TransferResult uploadStream(InputStream inputStream, String key, String contentType, Map<String, String> metadata,
+                                boolean publicRead) throws IOException;
+
+    default TransferResult uploadStream(InputStream inputStream, String key, String contentType, Map<String, String> metadata) throws IOException {
+        return uploadStream(inputStream, key, contentType, metadata, true);
+    }
+
+    /**
+     * Uploads a local file under {@code key}. Files above the multipart threshold are split into parts
+     * that are sent concurrently and retried individually.
+     */
+    TransferResult uploadFile(File file, String key, String contentType, Map<String, String> metadata,
+                              boolean publicRead) throws IOException;
+
+    default TransferResult uploadFile(File file, String key, String contentType, Map<String, String> metadata) throws IOException {
+        return uploadFile(file, key, contentType, metadata, true);
+    }
+
+    /**
+     * Non-blocking variant of {@link #uploadStream}. {@code content} is only requested as fast as parts
+     * are accepted by S3, so a slow client never holds more than {@code parallelism} part buffers. Each
+     * {@link DataBuffer} is released once its bytes have been copied into a part.
+     */
+    Mono<TransferResult> uploadContent(Flux<DataBuffer> content, String key, String contentType,
+                                       Map<String, String> metadata, boolean publicRead);
+
+    /**
+     * Uploads a small object that is already in memory with a single PUT. The array must not be modified
+     * until the returned future completes.
+     */
+    CompletableFuture<TransferResult> uploadBytes(byte[] content, String key, String contentType,
+                                                  Map<String, String> metadata, boolean publicRead);
+
+}
@@ -0,0 +1,48 @@
+package com.example.s3_bucket.service;
+
+import com.example.s3_bucket.exceptions.TranscodeRejectedException;
+
+import java.io.IOException;
+
+public interface TranscodeScheduler {
+
+    /**
+     * Reserves places for the encodes of a new video before any of it is staged. The ticket counts against the
+     * queue until it is closed, which the caller does once the upload has finished, whether it succeeded or not.
+     *
+     * @throws TranscodeRejectedException when the queue is full
+     */
+    Ticket admit();
+
+    /**
+     * Runs the encode once one of the encode slots is free, waiting for it in the queue until then.
+     */
+    void execute(Encode encode) throws IOException;
+
+    /**
+     * Number of threads each ffmpeg process may use.
+     */
+    int getThreadsPerEncode();
+
+    @FunctionalInterface
+    interface Encode {
+        void run() throws IOException;
+    }
+
+    /**
+     * A reserved place in the transcode queue. Closing it more than once has no effect.
+     */
+    @FunctionalInterface
+    interface Ticket extends AutoCloseable {
+
+        /**
+         * Ticket of an upload that never reaches the encoder.
+         */
+        Ticket NONE = () -> {
+        };
+
+        @Override
+        void close();
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.example.s3_bucket.service;
+
+import com.example.s3_bucket.dto.DedupEntry;
+
+import java.util.Optional;
+
+public interface UploadDedupService {
+
+    boolean isEnabled();
+
+    /**
+     * Entries are scoped to the user who uploaded them, so an object is never shared with another user
+     * who could later delete or replace it.
+     */
+    Optional<DedupEntry> find(String ownerId, String contentHash);
+
+    void record(DedupEntry entry);
+
+    void evict(String ownerId, String contentHash);
+
+}
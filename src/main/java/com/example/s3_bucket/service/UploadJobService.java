@@ -0,0 +1,16 @@
+package com.example.s3_bucket.service;
+
+import com.example.s3_bucket.dto.UploadJobDto;
+import com.example.s3_bucket.enums.ImageType;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.Optional;
+
+public interface UploadJobService {
+
+    UploadJobDto submit(MultipartFile multipartFile, String authUserId, String token, ImageType imageType) throws IOException;
+
+    Optional<UploadJobDto> getJob(String jobId, String authUserId);
+
+}
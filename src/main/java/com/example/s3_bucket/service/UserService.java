@@ -6,4 +6,10 @@ public interface UserService {
 
     PostCount getPostCount(String authUserId, String token);
 
+    /**
+     * Counts a successful upload against the locally cached post count of the user, so later uploads see
+     * the new count without asking the user service.
+     */
+    void recordUpload(String authUserId, boolean video);
+
 }
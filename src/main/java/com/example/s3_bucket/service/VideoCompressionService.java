@@ -1,9 +1,40 @@
 package com.example.s3_bucket.service;
 
+import com.example.s3_bucket.dto.VideoCompressionResult;
+import com.example.s3_bucket.dto.VideoProbe;
+
 import java.io.*;
+import java.util.concurrent.CompletableFuture;
 
 public interface VideoCompressionService {
 
-    void compressVideo(File inputFile, File outputFile) throws IOException;
+    /**
+     * Writes the upload profile version of {@code inputFile} to {@code outputFile}, re-encoding only when the
+     * input does not already meet the profile. Completing {@code abort} kills a running ffmpeg and fails the
+     * compression.
+     */
+    VideoCompressionResult compressVideo(File inputFile, File outputFile, CompletableFuture<?> abort) throws IOException;
+
+    /**
+     * Like {@link #compressVideo(File, File, CompletableFuture)}, but ffmpeg writes a fragmented MP4 to a pipe
+     * that is handed to {@code sink} while the encode is still running; nothing is written to disk. Reading the
+     * stream fails when ffmpeg does not finish successfully. The sink is called again when a failed remux falls
+     * back to a transcode.
+     */
+    VideoCompressionResult compressVideo(File inputFile, VideoSink sink, CompletableFuture<?> abort) throws IOException;
+
+    /**
+     * Reads the streams of {@code inputFile} with ffprobe, or returns {@code null} when it cannot be probed.
+     */
+    VideoProbe probe(File inputFile);
+
+    @FunctionalInterface
+    interface VideoSink {
+        /**
+         * Consumes the compressed video. {@code encode} describes how it is produced; its elapsed time is not
+         * known yet.
+         */
+        void consume(InputStream content, VideoCompressionResult encode) throws IOException;
+    }
 
 }
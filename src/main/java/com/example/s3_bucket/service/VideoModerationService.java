@@ -0,0 +1,13 @@
+package com.example.s3_bucket.service;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface VideoModerationService {
+
+    /**
+     * Starts a Rekognition content moderation job for the video at {@code s3Key}.
+     * The returned future completes with {@code true} when the video contains inappropriate content.
+     */
+    CompletableFuture<Boolean> moderate(String s3Key);
+
+}
@@ -0,0 +1,137 @@
+package com.example.s3_bucket.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.SdkBytes;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.function.Function;
+
+/**
+ * Builds a small JPEG proxy of an image for Rekognition. Rekognition scores a downsized proxy as well as the
+ * original, so large photos are decoded with source subsampling, scaled to {@code max-edge} and re-encoded
+ * before {@code DetectModerationLabels}. Anything that cannot be decoded is sent as the original file.
+ */
+@Slf4j
+@Component
+public class ModerationImageProxy {
+
+    private static final int INITIAL_BUFFER_SIZE = 256 * 1024;
+
+    @Value("${rekognition.image.proxy.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rekognition.image.proxy.max-edge:1280}")
+    private int maxEdge;
+
+    @Value("${rekognition.image.proxy.quality:0.8}")
+    private float quality;
+
+    /**
+     * Hands the bytes to send to Rekognition to {@code moderation}: the proxy when one can be built, otherwise
+     * the original file.
+     */
+    public <T> T withModerationBytes(File file, Function<SdkBytes, T> moderation) throws IOException {
+        if (enabled) {
+            byte[] proxy = encodeProxy(file);
+            if (proxy != null) {
+                log.debug("Moderation proxy for {}: {} -> {} bytes", file.getName(), file.length(), proxy.length);
+                // The array is never touched again, so it is wrapped rather than copied
+                return moderation.apply(SdkBytes.fromByteArrayUnsafe(proxy));
+            }
+        }
+        return moderation.apply(SdkBytes.fromByteArrayUnsafe(Files.readAllBytes(file.toPath())));
+    }
+
+    /**
+     * Returns the encoded proxy, or {@code null} when the original is already small enough to send as-is or
+     * cannot be decoded (HEIC, CMYK JPEGs, truncated files).
+     */
+    private byte[] encodeProxy(File file) {
+        try {
+            return decodeAndEncode(file);
+        } catch (IOException | RuntimeException e) {
+            log.debug("No moderation proxy for {}, sending the original: {}", file.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] decodeAndEncode(File file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int longestEdge = Math.max(width, height);
+                if (longestEdge <= maxEdge) {
+                    return null;
+                }
+
+                // Subsampling skips pixels while decoding, so a 12MP photo never materialises at full size
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, longestEdge / maxEdge);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+
+                return writeJpeg(scale(decoded));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage source) {
+        double ratio = (double) maxEdge / Math.max(source.getWidth(), source.getHeight());
+        int width = Math.max(1, (int) Math.round(source.getWidth() * Math.min(1.0, ratio)));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * Math.min(1.0, ratio)));
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private byte[] writeJpeg(BufferedImage image) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(buffer)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.s3_bucket.util;
+
+import java.util.Set;
+
+public class ModerationLabels {
+
+    public static final Set<String> INAPPROPRIATE_LABELS = Set.of(
+            "Explicit", "Non-Explicit Nudity of Intimate parts and Kissing",
+            "Violence", "Visually Disturbing", "Drugs & Tobacco", "Alcohol",
+            "Rude Gestures", "Gambling", "Hate Symbols"
+    );
+
+    private ModerationLabels() {
+    }
+
+    public static boolean isInappropriate(String labelName) {
+        return INAPPROPRIATE_LABELS.contains(labelName);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.s3_bucket.service.Impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyframeModerationServiceImplTest {
+
+    private static final byte[] SOI = bytes(0xFF, 0xD8);
+    // A quantization table whose payload happens to contain an EOI marker
+    private static final byte[] DQT = bytes(0xFF, 0xDB, 0x00, 0x06, 0x00, 0xFF, 0xD9, 0x10);
+    private static final byte[] SOS = bytes(0xFF, 0xDA, 0x00, 0x04, 0x01, 0x00);
+    private static final byte[] EOI = bytes(0xFF, 0xD9);
+
+    @Test
+    void keepsStuffedBytesAndRestartMarkersInsideTheScan() throws IOException {
+        byte[] scan = bytes(0x12, 0xFF, 0x00, 0x34, 0xFF, 0xD0, 0x56, 0xFF, 0xD7, 0x78);
+        byte[] frame = concat(SOI, DQT, SOS, scan, EOI);
+        InputStream input = new ByteArrayInputStream(frame);
+
+        assertThat(KeyframeModerationServiceImpl.readJpeg(input)).isEqualTo(frame);
+        assertThat(KeyframeModerationServiceImpl.readJpeg(input)).isNull();
+    }
+
+    @Test
+    void dropsFillBytesBeforeMarkers() throws IOException {
+        byte[] scan = bytes(0x12, 0x34);
+        InputStream input = new ByteArrayInputStream(concat(
+                SOI, bytes(0xFF, 0xFF), DQT, SOS, scan, bytes(0xFF, 0xFF, 0xFF), EOI));
+
+        assertThat(KeyframeModerationServiceImpl.readJpeg(input)).isEqualTo(concat(SOI, DQT, SOS, scan, EOI));
+    }
+
+    @Test
+    void readsConcatenatedFramesOneByOne() throws IOException {
+        byte[] first = concat(SOI, DQT, SOS, bytes(0x01, 0xFF, 0x00), EOI);
+        byte[] second = concat(SOI, SOS, bytes(0x02, 0x03), EOI);
+        InputStream input = new ByteArrayInputStream(concat(first, second));
+
+        assertThat(KeyframeModerationServiceImpl.readJpeg(input)).isEqualTo(first);
+        assertThat(KeyframeModerationServiceImpl.readJpeg(input)).isEqualTo(second);
+        assertThat(KeyframeModerationServiceImpl.readJpeg(input)).isNull();
+    }
+
+    @Test
+    void returnsNullAtTheEndOfTheStream() throws IOException {
+        assertThat(KeyframeModerationServiceImpl.readJpeg(new ByteArrayInputStream(new byte[0]))).isNull();
+    }
+
+    @Test
+    void failsOnAFrameTruncatedInsideASegment() {
+        byte[] frame = concat(SOI, DQT, SOS, bytes(0x12), EOI);
+        InputStream input = new ByteArrayInputStream(Arrays.copyOf(frame, SOI.length + DQT.length - 2));
+
+        assertThatThrownBy(() -> KeyframeModerationServiceImpl.readJpeg(input)).isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    void failsOnAFrameTruncatedInsideTheScan() {
+        InputStream input = new ByteArrayInputStream(concat(SOI, SOS, bytes(0x12, 0xFF, 0x00, 0x34, 0xFF)));
+
+        assertThatThrownBy(() -> KeyframeModerationServiceImpl.readJpeg(input)).isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    void rejectsAPipeThatIsNotMjpeg() {
+        InputStream input = new ByteArrayInputStream(bytes(0x00, 0x00, 0x00, 0x18));
+
+        assertThatThrownBy(() -> KeyframeModerationServiceImpl.readJpeg(input))
+                .isInstanceOf(IOException.class)
+                .isNotInstanceOf(EOFException.class);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
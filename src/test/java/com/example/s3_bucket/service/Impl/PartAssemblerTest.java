@@ -0,0 +1,104 @@
+package com.example.s3_bucket.service.Impl;
+
+import com.example.s3_bucket.service.Impl.S3TransferServiceImpl.PartAssembler;
+import com.example.s3_bucket.service.Impl.S3TransferServiceImpl.PartBuffer;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.core.io.buffer.PooledDataBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartAssemblerTest {
+
+    private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(new UnpooledByteBufAllocator(false));
+
+    @Test
+    void splitsBuffersIntoFullPartsAndARemainder() throws NoSuchAlgorithmException {
+        byte[] content = bytes(25);
+        PartAssembler assembler = new PartAssembler(10);
+
+        List<PartBuffer> parts = new ArrayList<>();
+        // Buffer boundaries deliberately straddle part boundaries
+        parts.addAll(assembler.append(buffer(content, 0, 7)));
+        parts.addAll(assembler.append(buffer(content, 7, 9)));
+        parts.addAll(assembler.append(buffer(content, 16, 9)));
+        parts.add(assembler.finish());
+
+        assertThat(parts).extracting(PartBuffer::length).containsExactly(10, 10, 5);
+        assertThat(parts).extracting(PartBuffer::last).containsExactly(false, false, true);
+        assertThat(concat(parts)).isEqualTo(content);
+        assertThat(assembler.totalLength()).isEqualTo(25);
+        assertThat(assembler.contentHash()).isEqualTo(sha256(content));
+    }
+
+    @Test
+    void emitsSeveralPartsFromOneLargeBuffer() {
+        byte[] content = bytes(32);
+        PartAssembler assembler = new PartAssembler(8);
+
+        List<PartBuffer> parts = assembler.append(buffer(content, 0, content.length));
+
+        assertThat(parts).hasSize(4).allMatch(part -> part.length() == 8 && !part.last());
+        assertThat(assembler.finish()).satisfies(last -> {
+            assertThat(last.length()).isZero();
+            assertThat(last.last()).isTrue();
+        });
+    }
+
+    @Test
+    void finishesEmptyContentWithAnEmptyLastPart() throws NoSuchAlgorithmException {
+        PartAssembler assembler = new PartAssembler(8);
+
+        PartBuffer last = assembler.finish();
+
+        assertThat(last.length()).isZero();
+        assertThat(last.last()).isTrue();
+        assertThat(assembler.totalLength()).isZero();
+        assertThat(assembler.contentHash()).isEqualTo(sha256(new byte[0]));
+    }
+
+    @Test
+    void releasesEveryBuffer() {
+        PartAssembler assembler = new PartAssembler(4);
+        DataBuffer small = buffer(bytes(3), 0, 3);
+        DataBuffer large = buffer(bytes(9), 0, 9);
+
+        assembler.append(small);
+        assembler.append(large);
+
+        assertThat(((PooledDataBuffer) small).isAllocated()).isFalse();
+        assertThat(((PooledDataBuffer) large).isAllocated()).isFalse();
+    }
+
+    private DataBuffer buffer(byte[] content, int offset, int length) {
+        return bufferFactory.wrap(Arrays.copyOfRange(content, offset, offset + length));
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31 + 7);
+        }
+        return bytes;
+    }
+
+    private static byte[] concat(List<PartBuffer> parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        parts.forEach(part -> out.write(part.bytes(), 0, part.length()));
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] content) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.s3_bucket.service.Impl;
+
+import com.example.s3_bucket.exceptions.TranscodeRejectedException;
+import com.example.s3_bucket.service.TranscodeScheduler.Ticket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TranscodeSchedulerImplTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void admitsVideosUntilSlotsAndQueueAreReserved() {
+        TranscodeSchedulerImpl scheduler = scheduler(2, 1, false);
+
+        scheduler.admit();
+        scheduler.admit();
+        Ticket third = scheduler.admit();
+
+        assertThatThrownBy(scheduler::admit).isInstanceOf(TranscodeRejectedException.class);
+        third.close();
+        // Closing twice must not free a second place
+        third.close();
+        scheduler.admit();
+        assertThatThrownBy(scheduler::admit).isInstanceOf(TranscodeRejectedException.class);
+    }
+
+    @Test
+    void countsTheHlsLadderAsASecondEncode() {
+        TranscodeSchedulerImpl scheduler = scheduler(2, 2, true);
+
+        Ticket first = scheduler.admit();
+        scheduler.admit();
+
+        assertThat(meterRegistry.get("video.transcode.admitted").gauge().value()).isEqualTo(4);
+        assertThatThrownBy(scheduler::admit).isInstanceOf(TranscodeRejectedException.class);
+        first.close();
+        scheduler.admit();
+    }
+
+    @Test
+    void admitsOneVideoWhenItsEncodesExceedTheLimit() {
+        TranscodeSchedulerImpl scheduler = scheduler(1, 0, true);
+
+        Ticket only = scheduler.admit();
+
+        assertThatThrownBy(scheduler::admit).isInstanceOf(TranscodeRejectedException.class);
+        only.close();
+        scheduler.admit();
+    }
+
+    private TranscodeSchedulerImpl scheduler(int slots, int queueCapacity, boolean hlsEnabled) {
+        TranscodeSchedulerImpl scheduler = new TranscodeSchedulerImpl(meterRegistry);
+        ReflectionTestUtils.setField(scheduler, "configuredSlots", slots);
+        ReflectionTestUtils.setField(scheduler, "threadsPerEncode", 2);
+        ReflectionTestUtils.setField(scheduler, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(scheduler, "defaultRetryAfterSeconds", 30L);
+        ReflectionTestUtils.setField(scheduler, "hlsEnabled", hlsEnabled);
+        scheduler.init();
+        return scheduler;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.s3_bucket.service.Impl;
+
+import com.example.s3_bucket.dto.DedupEntry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UploadDedupServiceImplTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    private UploadDedupServiceImpl service;
+
+    @AfterEach
+    void tearDown() {
+        close(service);
+    }
+
+    @Test
+    void replaysRecordsAndEvictionsAfterRestart() {
+        service = start(100);
+        service.record(entry("alice", "h1", "images/a.jpg"));
+        service.record(entry("alice", "h2", "images/b.jpg"));
+        service.record(entry("bob", "h1", "images/c.jpg"));
+        service.evict("alice", "h2");
+
+        service = restart(100);
+
+        assertThat(service.find("alice", "h1")).map(DedupEntry::getS3Key).contains("images/a.jpg");
+        assertThat(service.find("bob", "h1")).map(DedupEntry::getS3Key).contains("images/c.jpg");
+        assertThat(service.find("alice", "h2")).isEmpty();
+    }
+
+    @Test
+    void scopesEntriesToTheirOwner() {
+        service = start(100);
+        service.record(entry("alice", "h1", "images/a.jpg"));
+
+        assertThat(service.find("bob", "h1")).isEmpty();
+        service.evict("bob", "h1");
+        assertThat(service.find("alice", "h1")).isPresent();
+    }
+
+    @Test
+    void laterRecordForTheSameHashWins() {
+        service = start(100);
+        service.record(entry("alice", "h1", "images/a.jpg"));
+        service.record(entry("alice", "h1", "images/a2.jpg"));
+
+        service = restart(100);
+
+        assertThat(service.find("alice", "h1")).map(DedupEntry::getS3Key).contains("images/a2.jpg");
+    }
+
+    @Test
+    void skipsCorruptAndUnscopedJournalLines() throws IOException {
+        Files.write(journal(), List.of(
+                objectMapper.writeValueAsString(DedupEntry.builder().contentHash("legacy").s3Key("images/l.jpg").build()),
+                "{not json",
+                objectMapper.writeValueAsString(entry("alice", "h1", "images/a.jpg"))), StandardCharsets.UTF_8);
+
+        service = start(100);
+
+        assertThat(service.find("alice", "h1")).isPresent();
+        assertThat(service.find("null", "legacy")).isEmpty();
+    }
+
+    @Test
+    void compactsTheJournalToTheLiveEntries() throws IOException {
+        service = start(100);
+        // The journal is compacted once it holds more than twice max(live entries, 1000) lines
+        for (int i = 0; i <= 2000; i++) {
+            service.record(entry("alice", "h" + (i % 3), "images/" + i + ".jpg"));
+        }
+
+        assertThat(Files.readAllLines(journal())).hasSize(3);
+
+        service.record(entry("alice", "h3", "images/new.jpg"));
+        service = restart(100);
+
+        assertThat(Files.readAllLines(journal())).hasSize(4);
+        assertThat(service.find("alice", "h0")).map(DedupEntry::getS3Key).contains("images/1998.jpg");
+        assertThat(service.find("alice", "h3")).map(DedupEntry::getS3Key).contains("images/new.jpg");
+    }
+
+    @Test
+    void keepsAppendingWhenCompactionFails() throws IOException {
+        // The compacted journal cannot be written where a non-empty directory is in the way
+        Path blocked = Files.createDirectories(dir.resolve("index.jsonl.compact"));
+        Files.createFile(blocked.resolve("keep"));
+        service = start(100);
+        for (int i = 0; i <= 2000; i++) {
+            service.record(entry("alice", "h" + (i % 3), "images/" + i + ".jpg"));
+        }
+        service.record(entry("alice", "h3", "images/new.jpg"));
+
+        assertThat(Files.readAllLines(journal())).hasSize(2002);
+
+        service = restart(100);
+
+        assertThat(service.find("alice", "h0")).map(DedupEntry::getS3Key).contains("images/1998.jpg");
+        assertThat(service.find("alice", "h3")).map(DedupEntry::getS3Key).contains("images/new.jpg");
+    }
+
+    @Test
+    void dropsLeastRecentlyUsedEntriesBeyondTheCap() {
+        service = start(2);
+        service.record(entry("alice", "h1", "images/a.jpg"));
+        service.record(entry("alice", "h2", "images/b.jpg"));
+        service.find("alice", "h1");
+        service.record(entry("alice", "h3", "images/c.jpg"));
+
+        assertThat(service.find("alice", "h2")).isEmpty();
+        assertThat(service.find("alice", "h1")).isPresent();
+
+        service = restart(2);
+
+        assertThat(service.find("alice", "h3")).isPresent();
+    }
+
+    private UploadDedupServiceImpl restart(int maxEntries) {
+        close(service);
+        return start(maxEntries);
+    }
+
+    private UploadDedupServiceImpl start(int maxEntries) {
+        UploadDedupServiceImpl started = new UploadDedupServiceImpl(objectMapper);
+        ReflectionTestUtils.setField(started, "enabled", true);
+        ReflectionTestUtils.setField(started, "maxEntries", maxEntries);
+        ReflectionTestUtils.setField(started, "indexFile", journal().toString());
+        ReflectionTestUtils.invokeMethod(started, "load");
+        return started;
+    }
+
+    private static void close(UploadDedupServiceImpl service) {
+        if (service != null) {
+            ReflectionTestUtils.invokeMethod(service, "close");
+        }
+    }
+
+    private Path journal() {
+        return dir.resolve("index.jsonl");
+    }
+
+    private static DedupEntry entry(String ownerId, String contentHash, String s3Key) {
+        return DedupEntry.builder()
+                .ownerId(ownerId)
+                .contentHash(contentHash)
+                .s3Key(s3Key)
+                .etag("\"etag-" + s3Key + "\"")
+                .moderated(true)
+                .build();
+    }
+}
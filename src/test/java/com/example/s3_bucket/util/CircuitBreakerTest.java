@@ -0,0 +1,131 @@
+package com.example.s3_bucket.util;
+
+import com.example.s3_bucket.util.CircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(10);
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void staysClosedBelowTheMinimumNumberOfCalls() {
+        CircuitBreaker breaker = breaker(10, 4, 0.5);
+
+        fail(breaker, 3);
+
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void opensOnceTheFailureRateReachesTheThreshold() {
+        CircuitBreaker breaker = breaker(10, 4, 0.5);
+
+        succeed(breaker, 2);
+        fail(breaker, 1);
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        fail(breaker, 1);
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.isOpen()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void goesThroughHalfOpenBackToClosed() {
+        CircuitBreaker breaker = breaker(4, 4, 0.5);
+        fail(breaker, 4);
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+
+        advance(OPEN_DURATION.minusMillis(1));
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        advance(Duration.ofMillis(1));
+        assertThat(breaker.isOpen()).isFalse();
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        // Only one trial call is let through while half-open
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.onSuccess();
+
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void reopensWhenTheTrialCallFails() {
+        CircuitBreaker breaker = breaker(4, 4, 0.5);
+        fail(breaker, 4);
+        advance(OPEN_DURATION);
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        advance(OPEN_DURATION);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void closingStartsFromAnEmptyWindow() {
+        CircuitBreaker breaker = breaker(4, 4, 0.5);
+        fail(breaker, 4);
+        advance(OPEN_DURATION);
+        breaker.tryAcquire();
+        breaker.onSuccess();
+
+        // Failures from before the outage would otherwise reopen the circuit right away
+        fail(breaker, 3);
+
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void evictsTheOldestOutcomesOnceTheWindowIsFull() {
+        CircuitBreaker breaker = breaker(4, 4, 0.75);
+        fail(breaker, 2);
+        succeed(breaker, 2);
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+
+        // Each success pushes one of the early failures out of the window
+        succeed(breaker, 2);
+        fail(breaker, 2);
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+
+        // Window is now success, success, failure, failure; one more failure makes it 3 of 4
+        fail(breaker, 1);
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+
+    private CircuitBreaker breaker(int windowSize, int minimumCalls, double failureRate) {
+        return new CircuitBreaker("test", windowSize, minimumCalls, failureRate, OPEN_DURATION, now::get);
+    }
+
+    private void advance(Duration duration) {
+        now.addAndGet(duration.toNanos());
+    }
+
+    private static void succeed(CircuitBreaker breaker, int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertThat(breaker.tryAcquire()).isTrue();
+            breaker.onSuccess();
+        }
+    }
+
+    private static void fail(CircuitBreaker breaker, int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertThat(breaker.tryAcquire()).isTrue();
+            breaker.onFailure();
+        }
+    }
+}